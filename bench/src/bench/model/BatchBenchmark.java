@@ -0,0 +1,67 @@
+package bench.model;
+
+import main.model.BatchEvaluator;
+import main.model.CompiledExpression;
+import main.model.MathParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// One formula over 100 000 rows, evaluated row at a time and column at a time
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+    static final int ROWS = 100_000;
+
+    @Param({"(x+y)×(x-y)÷(1+x×x)", "√(x×x+y×y)", "ln(x)+log(y)^2"})
+    public String formula;
+
+    private CompiledExpression expression;
+    private final BatchEvaluator evaluator = new BatchEvaluator();
+    private double[][] columns;
+    private final double[] variables = new double[2];
+    private final double[] out = new double[ROWS];
+
+    @Setup
+    public void setUp() {
+        expression = new MathParser().compile(formula, "x", "y");
+        Random random = new Random(42);
+        columns = new double[2][ROWS];
+        for (double[] column : columns) {
+            for (int row = 0; row < ROWS; row++) {
+                column[row] = 1 + random.nextDouble() * 100;
+            }
+        }
+    }
+
+    @Benchmark
+    public double[] rowAtATime() {
+        for (int row = 0; row < ROWS; row++) {
+            variables[0] = columns[0][row];
+            variables[1] = columns[1][row];
+            out[row] = expression.evaluate(variables);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] columnAtATime() {
+        evaluator.evaluate(expression, columns, out);
+        return out;
+    }
+}
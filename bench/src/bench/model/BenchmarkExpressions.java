@@ -0,0 +1,49 @@
+package bench.model;
+
+// Generates the input shapes shared by the benchmarks
+final class BenchmarkExpressions {
+    static final String SHORT = "(5-2)4÷2+7÷(3+1)×(6÷2)";
+
+    private BenchmarkExpressions() {
+    }
+
+    // roughly length characters of mixed arithmetic, functions and constants
+    static String longExpression(int length) {
+        String[] terms = {"3.25×(4-1.5)", "√(16)÷2", "ln(e)×π", "log(1000)^2", "7÷(3+1)", "2.5^2-1"};
+        StringBuilder expression = new StringBuilder(length + 16);
+        for (int i = 0; expression.length() < length; i++) {
+            if (i > 0) {
+                expression.append(i % 2 == 0 ? '+' : '-');
+            }
+            expression.append(terms[i % terms.length]);
+        }
+        return expression.toString();
+    }
+
+    // (((...(1+1)+1)...)+1) nested depth times
+    static String deepNesting(int depth) {
+        StringBuilder expression = new StringBuilder(depth * 3 + 3);
+        expression.append("(".repeat(depth)).append("1+1");
+        for (int i = 0; i < depth; i++) {
+            expression.append(")+1");
+        }
+        return expression.toString();
+    }
+
+    // 2π(3)e+2π(3)e+... relying entirely on implicit multiplication
+    static String implicitMultiplication(int terms) {
+        StringBuilder expression = new StringBuilder(terms * 8);
+        for (int i = 0; i < terms; i++) {
+            if (i > 0) {
+                expression.append('+');
+            }
+            expression.append("2π(3)e");
+        }
+        return expression.toString();
+    }
+
+    // –(–(–(...–1...))) with a unary en dash at every level
+    static String unaryNegation(int depth) {
+        return "–(".repeat(depth) + "1" + ")".repeat(depth);
+    }
+}
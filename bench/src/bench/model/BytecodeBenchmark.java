@@ -0,0 +1,52 @@
+package bench.model;
+
+import main.model.BytecodeCompiler;
+import main.model.CompiledExpression;
+import main.model.ExpressionEvaluator;
+import main.model.MathParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// One evaluation of a compiled expression, interpreted and as generated bytecode
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BytecodeBenchmark {
+
+    @Param({"(x+y)×(x-y)÷(1+x×x)", "√(x×x+y×y)", "ln(x)+log(y)^2"})
+    public String formula;
+
+    private CompiledExpression interpreted;
+    private ExpressionEvaluator generated;
+    private final double[] variables = {3.5, 7.25};
+
+    @Setup
+    public void setUp() {
+        interpreted = new MathParser().compile(formula, "x", "y");
+        generated = BytecodeCompiler.compile(interpreted);
+    }
+
+    @Benchmark
+    public double interpreted() {
+        return interpreted.evaluate(variables);
+    }
+
+    @Benchmark
+    public double generated() {
+        return generated.evaluate(variables);
+    }
+}
@@ -0,0 +1,77 @@
+package bench.model;
+
+import main.model.CompiledExpression;
+import main.model.ExpressionCache;
+import main.model.MathParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Filling an empty cache with a set of formulas, by compiling their text or by reading them back from a
+// CompiledExpressionFile written earlier
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColdStartBenchmark {
+    @Param({"2000"})
+    public int formulaCount;
+
+    private String[] formulas;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        formulas = new String[formulaCount];
+        Map<String, CompiledExpression> compiled = new LinkedHashMap<>();
+        MathParser parser = new MathParser(null);
+        for (int i = 0; i < formulaCount; i++) {
+            // distinct formulas of 40 to 200 characters
+            formulas[i] = BenchmarkExpressions.longExpression(40 + i % 160) + "+" + i;
+            compiled.put(MathParser.cacheKey(formulas[i]), parser.compile(formulas[i]));
+        }
+        file = Files.createTempFile("cold-start", ".xpce");
+        parser.save(file, compiled);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public ExpressionCache compileText() {
+        ExpressionCache cache = new ExpressionCache(formulaCount);
+        MathParser parser = new MathParser(cache);
+        for (String formula : formulas) {
+            parser.compile(formula);
+        }
+        return cache;
+    }
+
+    @Benchmark
+    public ExpressionCache readFile() throws IOException {
+        ExpressionCache cache = new ExpressionCache(formulaCount);
+        new MathParser(cache).preload(file);
+        return cache;
+    }
+}
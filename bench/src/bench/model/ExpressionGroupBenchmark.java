@@ -0,0 +1,66 @@
+package bench.model;
+
+import main.model.CompiledExpression;
+import main.model.ExpressionGroup;
+import main.model.MathParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// A set of formulas sharing sub-expressions, evaluated one by one and as one group
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionGroupBenchmark {
+    static final List<String> FORMULAS = List.of(
+            "ln(x+1)×√(a^2+b^2)",
+            "ln(x+1)÷√(a^2+b^2)",
+            "ln(x+1)+a×b",
+            "√(a^2+b^2)-a×b",
+            "(ln(x+1)+a×b)^2",
+            "√(a^2+b^2)×(ln(x+1)-1)",
+            "log(a^2+b^2)+ln(x+1)",
+            "a×b÷√(a^2+b^2)");
+
+    private CompiledExpression[] separate;
+    private ExpressionGroup group;
+    private final double[] variables = {2.5, 3.0, 4.0};
+    private final double[] out = new double[FORMULAS.size()];
+
+    @Setup
+    public void setUp() {
+        MathParser parser = new MathParser();
+        separate = new CompiledExpression[FORMULAS.size()];
+        for (int i = 0; i < separate.length; i++) {
+            separate[i] = parser.compile(FORMULAS.get(i), "x", "a", "b");
+        }
+        group = parser.compileGroup(FORMULAS, "x", "a", "b");
+    }
+
+    @Benchmark
+    public double[] separate() {
+        for (int i = 0; i < separate.length; i++) {
+            out[i] = separate[i].evaluate(variables);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] group() {
+        group.evaluate(variables, out);
+        return out;
+    }
+}
@@ -0,0 +1,65 @@
+package bench.model;
+
+import main.model.ResultFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Formatting 1024 results, a mix of integers, short decimals and quotients with all their digits: through BigDecimal
+// and Double.toString as before, to a new String with ResultFormatter, and appended to a reused StringBuilder
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+    static final int RESULTS = 1024;
+
+    private final double[] results = new double[RESULTS];
+    private final ResultFormatter formatter = new ResultFormatter();
+    private final StringBuilder builder = new StringBuilder();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(25);
+        for (int i = 0; i < RESULTS; i++) {
+            results[i] = switch (i % 3) {
+                case 0 -> random.nextInt(100_000);
+                case 1 -> random.nextInt(100_000) / 100.0;
+                default -> random.nextInt(100_000) / (1.0 + random.nextInt(1000));
+            };
+        }
+    }
+
+    @Benchmark
+    public String bigDecimal() {
+        double result = results[next++ & RESULTS - 1];
+        double rounded = new BigDecimal(Double.toString(result)).setScale(12, RoundingMode.HALF_UP).doubleValue();
+        return rounded == (int) rounded ? String.valueOf((int) rounded) : String.valueOf(rounded);
+    }
+
+    @Benchmark
+    public String format() {
+        return ResultFormatter.format(results[next++ & RESULTS - 1]);
+    }
+
+    @Benchmark
+    public int append() {
+        builder.setLength(0);
+        return formatter.append(results[next++ & RESULTS - 1], builder).length();
+    }
+}
@@ -0,0 +1,87 @@
+package bench.model;
+
+import main.model.CompiledExpression;
+import main.model.GradientEvaluator;
+import main.model.MathParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// A formula over n variables: one evaluation, its gradient by reverse-mode differentiation, and its gradient by
+// central differences, which takes two evaluations per variable
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GradientBenchmark {
+    @Param({"2", "8", "32"})
+    public int variableCount;
+
+    private CompiledExpression expression;
+    private GradientEvaluator gradientEvaluator;
+    private double[] variables;
+    private double[] gradient;
+
+    @Setup
+    public void setUp() {
+        // v0×√(v1^2+1)+ln(v1+1)÷v0, then the same term for each next pair of variables, alternately added and
+        // subtracted
+        String[] names = new String[variableCount];
+        StringBuilder formula = new StringBuilder();
+        for (int i = 0; i < variableCount; i++) {
+            names[i] = "v" + i;
+        }
+        for (int i = 1; i < variableCount; i++) {
+            if (i > 1) {
+                formula.append(i % 2 == 0 ? "-" : "+");
+            }
+            formula.append(names[i - 1]).append("×√(").append(names[i]).append("^2+1)+ln(")
+                    .append(names[i]).append("+1)÷").append(names[i - 1]);
+        }
+        expression = new MathParser().compile(formula.toString(), names);
+        gradientEvaluator = new GradientEvaluator(expression);
+        variables = new double[variableCount];
+        for (int i = 0; i < variableCount; i++) {
+            variables[i] = 1 + i * 0.25;
+        }
+        gradient = new double[variableCount];
+    }
+
+    @Benchmark
+    public double evaluate() {
+        return expression.evaluate(variables);
+    }
+
+    @Benchmark
+    public double[] reverseMode() {
+        gradientEvaluator.evaluate(variables, gradient);
+        return gradient;
+    }
+
+    @Benchmark
+    public double[] centralDifferences() {
+        for (int slot = 0; slot < variableCount; slot++) {
+            double value = variables[slot];
+            double step = 1e-6 * Math.max(1, Math.abs(value));
+            variables[slot] = value + step;
+            double above = expression.evaluate(variables);
+            variables[slot] = value - step;
+            double below = expression.evaluate(variables);
+            variables[slot] = value;
+            gradient[slot] = (above - below) / (2 * step);
+        }
+        return gradient;
+    }
+}
@@ -0,0 +1,72 @@
+package bench.model;
+
+import jdk.jfr.Recording;
+import main.model.EngineMetrics;
+import main.model.ExpressionCache;
+import main.model.MathParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of the Flight Recorder events and of the metrics counters on parseExpression. uncached goes through every
+// phase, cached only looks the expression up and evaluates it, which is where fixed overhead shows most. With no
+// recording running the events should cost nothing, so "none" is the baseline to compare "metrics" and "recording"
+// against
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentationBenchmark {
+
+    @Param({"none", "metrics", "recording"})
+    public String instrumentation;
+
+    private MathParser uncached;
+    private MathParser cached;
+    private Recording recording;
+
+    @Setup
+    public void setUp() {
+        ExpressionCache cache = new ExpressionCache(16);
+        EngineMetrics metrics = instrumentation.equals("metrics") ? new EngineMetrics(cache) : null;
+        uncached = new MathParser(null, true, Integer.MAX_VALUE, metrics);
+        cached = new MathParser(cache, true, Integer.MAX_VALUE, metrics);
+        if (instrumentation.equals("recording")) {
+            recording = new Recording();
+            for (String event : new String[]{"xpressioncalc.Tokenize", "xpressioncalc.Parse", "xpressioncalc.Evaluate"}) {
+                recording.enable(event).withoutThreshold();
+            }
+            recording.start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    @Benchmark
+    public double uncached() {
+        return uncached.parseExpression(BenchmarkExpressions.SHORT);
+    }
+
+    @Benchmark
+    public double cached() {
+        return cached.parseExpression(BenchmarkExpressions.SHORT);
+    }
+}
@@ -0,0 +1,70 @@
+package bench.model;
+
+import main.model.BatchEvaluator;
+import main.model.CompiledExpression;
+import main.model.MathParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Scaling of evaluateParallel over 4 million rows with pools of 1 to N threads. Compare against
+// BatchBenchmark.columnAtATime for the single threaded cost
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelBatchBenchmark {
+    static final int ROWS = 4 * 1024 * 1024;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"65536"})
+    public int chunkSize;
+
+    private ForkJoinPool pool;
+    private BatchEvaluator evaluator;
+    private CompiledExpression expression;
+    private double[][] columns;
+    private final double[] out = new double[ROWS];
+
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(threads);
+        evaluator = new BatchEvaluator(BatchEvaluator.DEFAULT_BLOCK_SIZE, pool, chunkSize);
+        expression = new MathParser().compile("(x+y)×(x-y)÷(1+x×x)+√(y)", "x", "y");
+        Random random = new Random(42);
+        columns = new double[2][ROWS];
+        for (double[] column : columns) {
+            for (int row = 0; row < ROWS; row++) {
+                column[row] = 1 + random.nextDouble() * 100;
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public double[] evaluateParallel() {
+        evaluator.evaluateParallel(expression, columns, out);
+        return out;
+    }
+}
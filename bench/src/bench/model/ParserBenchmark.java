@@ -0,0 +1,62 @@
+package bench.model;
+
+import main.model.CompiledExpression;
+import main.model.MathParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// End to end parseExpression, compile only, and evaluation of an already compiled expression for each input shape
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"short", "long", "deepNesting", "implicitMultiplication", "unaryNegation"})
+    public String shape;
+
+    private final MathParser parser = new MathParser();
+    private String expression;
+    private CompiledExpression compiled;
+
+    @Setup
+    public void setUp() {
+        switch (shape) {
+            case "short" -> expression = BenchmarkExpressions.SHORT;
+            case "long" -> expression = BenchmarkExpressions.longExpression(32_000);
+            case "deepNesting" -> expression = BenchmarkExpressions.deepNesting(1_000);
+            case "implicitMultiplication" -> expression = BenchmarkExpressions.implicitMultiplication(500);
+            case "unaryNegation" -> expression = BenchmarkExpressions.unaryNegation(1_000);
+            default -> throw new IllegalArgumentException("Unknown shape: " + shape);
+        }
+        compiled = parser.compile(expression);
+    }
+
+    @Benchmark
+    public double parseExpression() {
+        return parser.parseExpression(expression);
+    }
+
+    @Benchmark
+    public CompiledExpression compile() {
+        return parser.compile(expression);
+    }
+
+    @Benchmark
+    public double evaluate() {
+        return compiled.evaluate();
+    }
+}
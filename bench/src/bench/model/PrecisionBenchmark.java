@@ -0,0 +1,74 @@
+package bench.model;
+
+import main.model.CompiledExpression;
+import main.model.MathParser;
+import main.model.PreciseExpression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// The monthly payment of a loan for 1024 different loans: in double, and exactly to a number of digits. Ten digits
+// are nearly always decided in double, while thirty never fit in one and always need the exact fallback
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrecisionBenchmark {
+    static final String PAYMENT = "p×r÷12÷(1-(1+r÷12)^(–n))";
+    static final int LOANS = 1024;
+
+    @Param({"10", "30"})
+    public int digits;
+
+    private CompiledExpression expression;
+    private PreciseExpression preciseExpression;
+    private MathContext mc;
+    private double[][] doubleLoans;
+    private BigDecimal[][] decimalLoans;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        MathParser parser = new MathParser();
+        expression = parser.compile(PAYMENT, "p", "r", "n");
+        preciseExpression = parser.compilePrecise(PAYMENT, "p", "r", "n");
+        mc = new MathContext(digits);
+        Random random = new Random(24);
+        doubleLoans = new double[LOANS][];
+        decimalLoans = new BigDecimal[LOANS][];
+        for (int i = 0; i < LOANS; i++) {
+            BigDecimal principal = BigDecimal.valueOf(random.nextInt(10_000_000), 2);
+            BigDecimal rate = BigDecimal.valueOf(1 + random.nextInt(2000), 4);
+            BigDecimal months = BigDecimal.valueOf(12 + random.nextInt(349));
+            decimalLoans[i] = new BigDecimal[]{principal, rate, months};
+            doubleLoans[i] = new double[]{principal.doubleValue(), rate.doubleValue(), months.doubleValue()};
+        }
+    }
+
+    @Benchmark
+    public double inDouble() {
+        next = (next + 1) & (LOANS - 1);
+        return expression.evaluate(doubleLoans[next]);
+    }
+
+    @Benchmark
+    public BigDecimal exact() {
+        next = (next + 1) & (LOANS - 1);
+        return preciseExpression.evaluate(mc, decimalLoans[next]);
+    }
+}
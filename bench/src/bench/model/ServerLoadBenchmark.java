@@ -0,0 +1,82 @@
+package bench.model;
+
+import main.ui.EvaluationServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Load generator for EvaluationServer on localhost: each operation sends a burst of requests all at once and waits
+// for every answer. The client only reuses idle connections, so each request in flight opens its own connection
+// and the server has to accept them all at once. The time of a burst is that of its slowest request, so it bounds
+// the p99 latency under that many concurrent connections
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class ServerLoadBenchmark {
+    @Param({"100", "2000"})
+    public int connections;
+
+    private EvaluationServer server;
+    private HttpClient client;
+    private HttpRequest[] requests;
+    private String[] expected;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new EvaluationServer(0);
+        server.start();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        URI uri = URI.create("http://localhost:" + server.getPort() + "/evaluate");
+        requests = new HttpRequest[connections];
+        expected = new String[connections];
+        for (int i = 0; i < connections; i++) {
+            requests[i] = HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString("(" + i + "+1)×2")).build();
+            expected[i] = (i + 1) * 2 + "\n";
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public int burst() {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>(connections);
+        for (HttpRequest request : requests) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        for (int i = 0; i < connections; i++) {
+            HttpResponse<String> response = responses.get(i).join();
+            if (response.statusCode() != 200 || !response.body().equals(expected[i])) {
+                throw new IllegalStateException("Request " + i + " answered " + response.statusCode() + ": " + response.body());
+            }
+        }
+        return connections;
+    }
+}
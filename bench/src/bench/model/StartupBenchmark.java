@@ -0,0 +1,85 @@
+package bench.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Wall-clock time from launching a new JVM on the runtime jar built by the root pom until it has evaluated its first
+// expression, or has shown the calculator window (firstWindow needs a display), with:
+// - none: class data sharing disabled
+// - jdk: the default CDS archive of the JDK
+// - app: the AppCDS archive built by mvn package -Pcds
+// Build the jar and the archive first, from the root folder: mvn package -Pcds
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(1)
+public class StartupBenchmark {
+    @Param({"none", "jdk", "app"})
+    public String cds;
+
+    @Param({"../target"})
+    public String buildDirectory;
+
+    private List<String> command;
+
+    @Setup
+    public void setUp() {
+        Path jar = Path.of(buildDirectory, "XpressionCalc.jar");
+        Path archive = Path.of(buildDirectory, "XpressionCalc.jsa");
+        if (!Files.exists(jar) || (cds.equals("app") && !Files.exists(archive))) {
+            throw new IllegalStateException("Run mvn package -Pcds in the root folder first");
+        }
+        command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        switch (cds) {
+            case "none" -> command.add("-Xshare:off");
+            case "jdk" -> command.add("-Xshare:auto");
+            default -> command.add("-XX:SharedArchiveFile=" + archive);
+        }
+        command.add("-jar");
+        command.add(jar.toString());
+        command.add("--startup");
+    }
+
+    @Benchmark
+    public int firstEvaluation() throws IOException, InterruptedException {
+        return launch("evaluation");
+    }
+
+    @Benchmark
+    public int firstWindow() throws IOException, InterruptedException {
+        return launch("window");
+    }
+
+    private int launch(String milestone) throws IOException, InterruptedException {
+        List<String> arguments = new ArrayList<>(command);
+        arguments.add(milestone);
+        Process process = new ProcessBuilder(arguments)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException("Startup run failed with exit code " + exitCode);
+        }
+        return exitCode;
+    }
+}
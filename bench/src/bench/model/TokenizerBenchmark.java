@@ -0,0 +1,51 @@
+package bench.model;
+
+import main.model.MathTokenizer;
+import main.model.Token;
+import main.model.TokenBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark {
+
+    @Param({"short", "long"})
+    public String shape;
+
+    private final MathTokenizer tokenizer = new MathTokenizer();
+    private final TokenBuffer buffer = new TokenBuffer();
+    private String expression;
+
+    @Setup
+    public void setUp() {
+        expression = shape.equals("short") ? BenchmarkExpressions.SHORT : BenchmarkExpressions.longExpression(32_000);
+    }
+
+    @Benchmark
+    public List<Token> tokenize() {
+        return tokenizer.tokenize(expression);
+    }
+
+    @Benchmark
+    public TokenBuffer tokenizeCompact() {
+        tokenizer.tokenize(expression, buffer);
+        return buffer;
+    }
+}
@@ -0,0 +1,68 @@
+package bench.model;
+
+import main.model.BatchEvaluator;
+import main.model.CompiledExpression;
+import main.model.MathParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// One formula over a million rows, column at a time with the scalar kernels and with the Vector API kernels.
+// The fork adds the jdk.incubator.vector module; setUp fails if the vector kernels still cannot be loaded
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class VectorBenchmark {
+    static final int ROWS = 1_000_000;
+
+    @Param({"x×y+x-y", "(x+y)×(x-y)÷(1+x×x)", "1÷x+1÷y", "ln(x)+log(y)"})
+    public String formula;
+
+    private CompiledExpression expression;
+    private final BatchEvaluator scalar = new BatchEvaluator(BatchEvaluator.DEFAULT_BLOCK_SIZE, ForkJoinPool.commonPool(), BatchEvaluator.DEFAULT_CHUNK_SIZE, false);
+    private final BatchEvaluator vector = new BatchEvaluator(BatchEvaluator.DEFAULT_BLOCK_SIZE, ForkJoinPool.commonPool(), BatchEvaluator.DEFAULT_CHUNK_SIZE, true);
+    private double[][] columns;
+    private final double[] out = new double[ROWS];
+
+    @Setup
+    public void setUp() {
+        if (!vector.isVectorized()) {
+            throw new IllegalStateException("Vector API kernels are not available");
+        }
+        expression = new MathParser().compile(formula, "x", "y");
+        Random random = new Random(42);
+        columns = new double[2][ROWS];
+        for (double[] column : columns) {
+            for (int row = 0; row < ROWS; row++) {
+                column[row] = 1 + random.nextDouble() * 100;
+            }
+        }
+    }
+
+    @Benchmark
+    public double[] scalar() {
+        scalar.evaluate(expression, columns, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] vector() {
+        vector.evaluate(expression, columns, out);
+        return out;
+    }
+}
@@ -0,0 +1,128 @@
+package bench.model;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// One operator over a block of BatchEvaluator.DEFAULT_BLOCK_SIZE rows, with the scalar loop of BlockKernels and
+// with the same loop on DoubleVector. This is how VectorBlockKernels was chosen: an operator only gets a vector
+// kernel where it beats the scalar loop, which the JIT already vectorizes when it can. Run it once as is and once
+// with -jvmArgsAppend "--add-modules jdk.incubator.vector -XX:UseAVX=2" to compare AVX-512 with AVX2
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class VectorKernelBenchmark {
+    private static final int ROWS = 1024;
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Param({"+", "×", "÷", "^", "√"})
+    public String operator;
+
+    private final double[] left = new double[ROWS];
+    private final double[] right = new double[ROWS];
+    private final double[] source = new double[ROWS];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int row = 0; row < ROWS; row++) {
+            source[row] = 1 + random.nextDouble() * 100;
+            right[row] = 0.5 + random.nextDouble() * 2;
+        }
+    }
+
+    @Benchmark
+    public double[] scalar() {
+        System.arraycopy(source, 0, left, 0, ROWS);
+        switch (operator) {
+            case "+" -> {
+                for (int i = 0; i < ROWS; i++) {
+                    left[i] += right[i];
+                }
+            }
+            case "×" -> {
+                for (int i = 0; i < ROWS; i++) {
+                    left[i] *= right[i];
+                }
+            }
+            case "÷" -> {
+                for (int i = 0; i < ROWS; i++) {
+                    if (right[i] == 0) {
+                        throw new ArithmeticException("Division by zero");
+                    }
+                }
+                for (int i = 0; i < ROWS; i++) {
+                    left[i] /= right[i];
+                }
+            }
+            case "^" -> {
+                for (int i = 0; i < ROWS; i++) {
+                    left[i] = Math.pow(left[i], right[i]);
+                }
+            }
+            default -> {
+                for (int i = 0; i < ROWS; i++) {
+                    left[i] = Math.sqrt(left[i]);
+                }
+            }
+        }
+        return left;
+    }
+
+    // Rows are a multiple of every vector length, so there is no tail
+    @Benchmark
+    public double[] vector() {
+        System.arraycopy(source, 0, left, 0, ROWS);
+        int step = SPECIES.length();
+        switch (operator) {
+            case "+" -> {
+                for (int i = 0; i < ROWS; i += step) {
+                    DoubleVector.fromArray(SPECIES, left, i).add(DoubleVector.fromArray(SPECIES, right, i)).intoArray(left, i);
+                }
+            }
+            case "×" -> {
+                for (int i = 0; i < ROWS; i += step) {
+                    DoubleVector.fromArray(SPECIES, left, i).mul(DoubleVector.fromArray(SPECIES, right, i)).intoArray(left, i);
+                }
+            }
+            case "÷" -> {
+                for (int i = 0; i < ROWS; i += step) {
+                    DoubleVector divisor = DoubleVector.fromArray(SPECIES, right, i);
+                    if (divisor.eq(0).anyTrue()) {
+                        throw new ArithmeticException("Division by zero");
+                    }
+                    DoubleVector.fromArray(SPECIES, left, i).div(divisor).intoArray(left, i);
+                }
+            }
+            case "^" -> {
+                for (int i = 0; i < ROWS; i += step) {
+                    DoubleVector.fromArray(SPECIES, left, i)
+                            .lanewise(VectorOperators.POW, DoubleVector.fromArray(SPECIES, right, i)).intoArray(left, i);
+                }
+            }
+            default -> {
+                for (int i = 0; i < ROWS; i += step) {
+                    DoubleVector.fromArray(SPECIES, left, i).sqrt().intoArray(left, i);
+                }
+            }
+        }
+        return left;
+    }
+}
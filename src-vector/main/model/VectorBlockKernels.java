@@ -0,0 +1,40 @@
+package main.model;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+// Block kernels on jdk.incubator.vector, working on as many rows per instruction as the widest vector the CPU has
+// (4 with AVX2, 8 with AVX-512). Rows past the last full vector go through a scalar tail loop.
+// Only division is replaced: the JIT cannot vectorize its loop, which may exit early on a zero divisor, but it
+// already vectorizes the loops of +, -, × and √ in BlockKernels, which measured no faster on the Vector API
+// (VectorKernelBenchmark, results in bench/results/vector.txt). The vector ^ is only faster with AVX-512, where it
+// is not correctly rounded and differs from Math.pow, so ^ stays scalar as well. Division is correctly rounded, so
+// it gives the same results as CompiledExpression.evaluate.
+// ln and log keep the scalar check too: their time goes into the Math calls, and the vector check measured slower.
+// Only ever loaded through BlockKernels.forBatches, as this class cannot link without the module. It lives in
+// src-vector so that src compiles without the module; the Maven builds compile it separately with the module added
+final class VectorBlockKernels extends BlockKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    boolean isVectorized() {
+        return true;
+    }
+
+    // Checks each vector of divisors just before dividing by it, in a single pass over the rows
+    @Override
+    void divide(double[] left, double[] right, int rows) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(rows); i < bound; i += SPECIES.length()) {
+            DoubleVector divisor = DoubleVector.fromArray(SPECIES, right, i);
+            if (divisor.eq(0).anyTrue()) {
+                throw new ArithmeticException("Division by zero");
+            }
+            DoubleVector.fromArray(SPECIES, left, i).div(divisor).intoArray(left, i);
+        }
+        checkNonZero(right, i, rows);
+        for (; i < rows; i++) {
+            left[i] /= right[i];
+        }
+    }
+}
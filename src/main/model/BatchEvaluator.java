@@ -0,0 +1,190 @@
+package main.model;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Evaluates one compiled expression over many rows of variable values stored column by column: columns[slot][row]
+// holds the value of the variable in that slot for the row, and the result of each row is written to out[row].
+// Rows are processed in blocks, running each instruction of the expression over the whole block before moving on
+// to the next one, so every operator becomes a simple loop over primitive arrays that the JIT can unroll and
+// vectorize. With the jdk.incubator.vector module present the loops run on the Vector API instead (see
+// BlockKernels). Results are identical to evaluating each row with CompiledExpression.evaluate.
+// evaluateParallel splits the rows into chunks that are evaluated on a ForkJoinPool, each task with its own
+// operand stack, so a single evaluator can be used from any number of threads
+public final class BatchEvaluator {
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final int blockSize;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final BlockKernels kernels;
+
+    public BatchEvaluator() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    public BatchEvaluator(int blockSize) {
+        this(blockSize, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    // chunkSize is the number of rows below which evaluateParallel stops splitting the work
+    public BatchEvaluator(int blockSize, ForkJoinPool pool, int chunkSize) {
+        this(blockSize, pool, chunkSize, true);
+    }
+
+    // vectorize chooses the Vector API kernels when the jdk.incubator.vector module is present; without the module,
+    // or with vectorize false, the operators run as scalar loops
+    public BatchEvaluator(int blockSize, ForkJoinPool pool, int chunkSize, boolean vectorize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.blockSize = blockSize;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.kernels = vectorize ? BlockKernels.forBatches() : BlockKernels.scalar();
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    // Whether the operators run on the Vector API
+    public boolean isVectorized() {
+        return kernels.isVectorized();
+    }
+
+    // Evaluates every row, the number of rows being the length of out
+    public void evaluate(CompiledExpression expression, double[][] columns, double[] out) {
+        evaluate(expression, columns, out, 0, out.length);
+    }
+
+    // Evaluates rows from (inclusive) to to (exclusive)
+    public void evaluate(CompiledExpression expression, double[][] columns, double[] out, int from, int to) {
+        checkArguments(expression, columns, out, from, to);
+        evaluateRange(expression, columns, out, from, to, newScratch(expression));
+    }
+
+    // Evaluates every row like evaluate, spreading chunks of rows over the pool. If a row fails, the exception of
+    // one of the failing chunks is rethrown once all running chunks are done
+    public void evaluateParallel(CompiledExpression expression, double[][] columns, double[] out) {
+        checkArguments(expression, columns, out, 0, out.length);
+        pool.invoke(new ChunkTask(expression, columns, out, 0, out.length));
+    }
+
+    // Operand stack holding one block of rows per entry
+    double[][] newScratch(CompiledExpression expression) {
+        return new double[expression.getMaxStackDepth()][blockSize];
+    }
+
+    void checkArguments(CompiledExpression expression, double[][] columns, double[] out, int from, int to) {
+        int variableCount = expression.getVariableNames().size();
+        if (columns.length < variableCount) {
+            throw new IllegalArgumentException("Expected " + variableCount + " columns but got " + columns.length);
+        }
+        if (from < 0 || to > out.length || from > to) {
+            throw new IllegalArgumentException("Invalid row range " + from + " to " + to + " for " + out.length + " rows");
+        }
+        for (int slot = 0; slot < variableCount; slot++) {
+            if (columns[slot].length < to) {
+                throw new IllegalArgumentException("Column " + slot + " has " + columns[slot].length + " rows but " + to + " are needed");
+            }
+        }
+        if (expression.code().length == 0 && from < to) {
+            throw new EmptyStackException();
+        }
+    }
+
+    void evaluateRange(CompiledExpression expression, double[][] columns, double[] out, int from, int to, double[][] stack) {
+        for (int start = from; start < to; start += blockSize) {
+            int rows = Math.min(blockSize, to - start);
+            evaluateBlock(expression, columns, start, rows, stack);
+            System.arraycopy(stack[0], 0, out, start, rows);
+        }
+    }
+
+    private void evaluateBlock(CompiledExpression expression, double[][] columns, int start, int rows, double[][] stack) {
+        int[] code = expression.code();
+        double[] constants = expression.constants();
+        int top = -1;
+
+        for (int instruction : code) {
+            switch (Opcodes.opcode(instruction)) {
+                case Opcodes.PUSH_CONSTANT:
+                    Arrays.fill(stack[++top], 0, rows, constants[Opcodes.operand(instruction)]);
+                    break;
+                case Opcodes.LOAD_VARIABLE:
+                    System.arraycopy(columns[Opcodes.operand(instruction)], start, stack[++top], 0, rows);
+                    break;
+                case Opcodes.ADD:
+                    kernels.add(stack[top - 1], stack[top--], rows);
+                    break;
+                case Opcodes.SUBTRACT:
+                    kernels.subtract(stack[top - 1], stack[top--], rows);
+                    break;
+                case Opcodes.MULTIPLY:
+                    kernels.multiply(stack[top - 1], stack[top--], rows);
+                    break;
+                case Opcodes.DIVIDE:
+                    kernels.divide(stack[top - 1], stack[top--], rows);
+                    break;
+                case Opcodes.POWER:
+                    kernels.power(stack[top - 1], stack[top--], rows);
+                    break;
+                case Opcodes.SQRT:
+                    kernels.sqrt(stack[top], rows);
+                    break;
+                case Opcodes.LN:
+                    kernels.ln(stack[top], rows);
+                    break;
+                case Opcodes.LOG:
+                    kernels.log(stack[top], rows);
+                    break;
+                case Opcodes.NEGATE:
+                    kernels.negate(stack[top], rows);
+                    break;
+            }
+        }
+    }
+
+    // never serialized, like any fork-join task
+    @SuppressWarnings("serial")
+    private final class ChunkTask extends RecursiveAction {
+        private final CompiledExpression expression;
+        private final double[][] columns;
+        private final double[] out;
+        private final int from;
+        private final int to;
+
+        ChunkTask(CompiledExpression expression, double[][] columns, double[] out, int from, int to) {
+            this.expression = expression;
+            this.columns = columns;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                evaluateRange(expression, columns, out, from, to, newScratch(expression));
+                return;
+            }
+            // split on a block boundary so only the last chunk has a partial block
+            int middle = from + (to - from) / 2 / blockSize * blockSize;
+            if (middle == from) {
+                middle = from + (to - from) / 2;
+            }
+            invokeAll(new ChunkTask(expression, columns, out, from, middle), new ChunkTask(expression, columns, out, middle, to));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package main.model;
+
+// The loops BatchEvaluator runs for each operator over a block of rows. Each kernel stores its result in the left
+// operand. These are plain scalar loops; forBatches() swaps in VectorBlockKernels when the jdk.incubator.vector
+// module is present (--add-modules jdk.incubator.vector), and keeps these otherwise
+class BlockKernels {
+    private static final BlockKernels SCALAR = new BlockKernels();
+    private static final BlockKernels VECTOR = loadVectorKernels();
+
+    // The vector kernels when they can be used, otherwise the scalar ones
+    static BlockKernels forBatches() {
+        return VECTOR != null ? VECTOR : SCALAR;
+    }
+
+    static BlockKernels scalar() {
+        return SCALAR;
+    }
+
+    // Loaded by name so this class still links when the module is missing
+    private static BlockKernels loadVectorKernels() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (BlockKernels) Class.forName("main.model.VectorBlockKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    boolean isVectorized() {
+        return false;
+    }
+
+    void add(double[] left, double[] right, int rows) {
+        for (int i = 0; i < rows; i++) {
+            left[i] += right[i];
+        }
+    }
+
+    void subtract(double[] left, double[] right, int rows) {
+        for (int i = 0; i < rows; i++) {
+            left[i] -= right[i];
+        }
+    }
+
+    void multiply(double[] left, double[] right, int rows) {
+        for (int i = 0; i < rows; i++) {
+            left[i] *= right[i];
+        }
+    }
+
+    // The domain checks run as a separate pass so the arithmetic loops stay branch free
+
+    void divide(double[] left, double[] right, int rows) {
+        checkNonZero(right, rows);
+        for (int i = 0; i < rows; i++) {
+            left[i] /= right[i];
+        }
+    }
+
+    void power(double[] left, double[] right, int rows) {
+        for (int i = 0; i < rows; i++) {
+            left[i] = Math.pow(left[i], right[i]);
+        }
+    }
+
+    void sqrt(double[] operand, int rows) {
+        for (int i = 0; i < rows; i++) {
+            operand[i] = Math.sqrt(operand[i]);
+        }
+    }
+
+    void negate(double[] operand, int rows) {
+        for (int i = 0; i < rows; i++) {
+            operand[i] = -operand[i];
+        }
+    }
+
+    void ln(double[] operand, int rows) {
+        checkPositive(operand, 0, rows, "Argument of ln must be positive");
+        for (int i = 0; i < rows; i++) {
+            operand[i] = Math.log(operand[i]);
+        }
+    }
+
+    void log(double[] operand, int rows) {
+        checkPositive(operand, 0, rows, "Argument of log must be positive");
+        for (int i = 0; i < rows; i++) {
+            operand[i] = Math.log10(operand[i]);
+        }
+    }
+
+    void checkNonZero(double[] operand, int rows) {
+        checkNonZero(operand, 0, rows);
+    }
+
+    static void checkNonZero(double[] operand, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (operand[i] == 0) {
+                throw new ArithmeticException("Division by zero");
+            }
+        }
+    }
+
+    static void checkPositive(double[] operand, int from, int to, String message) {
+        for (int i = from; i < to; i++) {
+            if (operand[i] <= 0) {
+                throw new ArithmeticException(message);
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package main.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+
+// Translates a compiled expression into a class of its own whose evaluate method holds the whole formula as
+// straight-line bytecode, so HotSpot can inline and register allocate it like hand written Java. Each operand
+// stack instruction maps to its JVM equivalent: constants are loaded from the constant pool, variables straight
+// from the array, and division, ln and log call the same checks as the interpreter so they fail the same way.
+// The classes are hidden classes that are not strongly tied to their class loader, so a generated class is
+// unloaded once the evaluator created from it is no longer reachable
+public final class BytecodeCompiler {
+    // HotSpot does not JIT compile methods longer than this (HugeMethodLimit), so formulas that would generate
+    // more bytecode are left to the interpreter
+    private static final int MAX_CODE_LENGTH = 8000;
+
+    private static final String CLASS_NAME = "main/model/GeneratedExpression";
+    private static final String EXPRESSION_CLASS = "main/model/CompiledExpression";
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int DALOAD = 0x31;
+    private static final int DADD = 0x63;
+    private static final int DSUB = 0x67;
+    private static final int DMUL = 0x6b;
+    private static final int DNEG = 0x77;
+    private static final int DRETURN = 0xaf;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+
+    private BytecodeCompiler() {
+    }
+
+    // Returns an evaluator running generated bytecode for the expression, or the expression itself when it is
+    // empty or too large to benefit from it
+    public static ExpressionEvaluator compile(CompiledExpression expression) {
+        if (expression.getInstructionCount() == 0) {
+            return expression;
+        }
+        byte[] classFile = generate(expression);
+        if (classFile == null) {
+            return expression;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            return (ExpressionEvaluator) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not load generated class for expression", e);
+        }
+    }
+
+    private static byte[] generate(CompiledExpression expression) {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classEntry(CLASS_NAME);
+        int superClass = pool.classEntry("java/lang/Object");
+        int evaluatorInterface = pool.classEntry("main/model/ExpressionEvaluator");
+
+        ByteArrayOutputStream constructorCode = new ByteArrayOutputStream();
+        constructorCode.write(ALOAD_0);
+        writeInstruction(constructorCode, INVOKESPECIAL, pool.methodEntry("java/lang/Object", "<init>", "()V"));
+        constructorCode.write(RETURN);
+
+        ByteArrayOutputStream evaluateCode = new ByteArrayOutputStream();
+        // fail like the interpreter when too few variable values are passed
+        evaluateCode.write(ALOAD_1);
+        pushInt(evaluateCode, pool, expression.getVariableNames().size());
+        writeInstruction(evaluateCode, INVOKESTATIC, pool.methodEntry(EXPRESSION_CLASS, "checkVariables", "([DI)V"));
+
+        double[] constants = expression.constants();
+        for (int instruction : expression.code()) {
+            switch (Opcodes.opcode(instruction)) {
+                case Opcodes.PUSH_CONSTANT ->
+                        writeInstruction(evaluateCode, LDC2_W, pool.doubleEntry(constants[Opcodes.operand(instruction)]));
+                case Opcodes.LOAD_VARIABLE -> {
+                    evaluateCode.write(ALOAD_1);
+                    pushInt(evaluateCode, pool, Opcodes.operand(instruction));
+                    evaluateCode.write(DALOAD);
+                }
+                case Opcodes.ADD -> evaluateCode.write(DADD);
+                case Opcodes.SUBTRACT -> evaluateCode.write(DSUB);
+                case Opcodes.MULTIPLY -> evaluateCode.write(DMUL);
+                case Opcodes.NEGATE -> evaluateCode.write(DNEG);
+                case Opcodes.DIVIDE -> writeInstruction(evaluateCode, INVOKESTATIC, pool.methodEntry(EXPRESSION_CLASS, "divide", "(DD)D"));
+                case Opcodes.POWER -> writeInstruction(evaluateCode, INVOKESTATIC, pool.methodEntry("java/lang/Math", "pow", "(DD)D"));
+                case Opcodes.SQRT -> writeInstruction(evaluateCode, INVOKESTATIC, pool.methodEntry("java/lang/Math", "sqrt", "(D)D"));
+                case Opcodes.LN -> writeInstruction(evaluateCode, INVOKESTATIC, pool.methodEntry(EXPRESSION_CLASS, "ln", "(D)D"));
+                case Opcodes.LOG -> writeInstruction(evaluateCode, INVOKESTATIC, pool.methodEntry(EXPRESSION_CLASS, "log", "(D)D"));
+            }
+            if (evaluateCode.size() > MAX_CODE_LENGTH || pool.size() > 0xffff) {
+                return null;
+            }
+        }
+        evaluateCode.write(DRETURN);
+
+        int constructorName = pool.utf8("<init>");
+        int constructorDescriptor = pool.utf8("()V");
+        int evaluateName = pool.utf8("evaluate");
+        int evaluateDescriptor = pool.utf8("([D)D");
+        int codeAttribute = pool.utf8("Code");
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xcafebabe);
+            out.writeShort(0);
+            out.writeShort(61); // Java 17 class file, no stack map frames needed since the code never branches
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(evaluatorInterface);
+            out.writeShort(0); // fields
+            out.writeShort(2); // methods
+            writeMethod(out, constructorName, constructorDescriptor, codeAttribute, 1, 1, constructorCode.toByteArray());
+            // every double takes two stack slots, plus two for the array and index when loading a variable
+            int maxStack = 2 * expression.getMaxStackDepth() + 2;
+            writeMethod(out, evaluateName, evaluateDescriptor, codeAttribute, maxStack, 2, evaluateCode.toByteArray());
+            out.writeShort(0); // class attributes
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void pushInt(ByteArrayOutputStream code, ConstantPool pool, int value) {
+        if (value <= Short.MAX_VALUE) {
+            writeInstruction(code, SIPUSH, value);
+        } else {
+            writeInstruction(code, LDC_W, pool.integerEntry(value));
+        }
+    }
+
+    private static void writeInstruction(ByteArrayOutputStream code, int opcode, int operand) {
+        code.write(opcode);
+        code.write(operand >>> 8);
+        code.write(operand);
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeAttribute, int maxStack,
+                                    int maxLocals, byte[] code) throws IOException {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeAttribute);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // code attributes
+    }
+
+    // Constant pool of the generated class, reusing entries that are asked for more than once
+    private static final class ConstantPool {
+        private static final int UTF8 = 1;
+        private static final int INTEGER = 3;
+        private static final int DOUBLE = 6;
+        private static final int CLASS = 7;
+        private static final int METHOD_REF = 10;
+        private static final int NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private int size = 1; // entries are numbered from 1
+
+        int size() {
+            return size;
+        }
+
+        int utf8(String value) {
+            return entry("utf8:" + value, 1, () -> {
+                out.writeByte(UTF8);
+                out.writeUTF(value);
+            });
+        }
+
+        int classEntry(String name) {
+            int nameIndex = utf8(name);
+            return entry("class:" + name, 1, () -> {
+                out.writeByte(CLASS);
+                out.writeShort(nameIndex);
+            });
+        }
+
+        int methodEntry(String owner, String name, String descriptor) {
+            int ownerIndex = classEntry(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = entry("nameAndType:" + name + descriptor, 1, () -> {
+                out.writeByte(NAME_AND_TYPE);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return entry("method:" + owner + "." + name + descriptor, 1, () -> {
+                out.writeByte(METHOD_REF);
+                out.writeShort(ownerIndex);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        int integerEntry(int value) {
+            return entry("int:" + value, 1, () -> {
+                out.writeByte(INTEGER);
+                out.writeInt(value);
+            });
+        }
+
+        // doubles take up two entries of the pool
+        int doubleEntry(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            return entry("double:" + bits, 2, () -> {
+                out.writeByte(DOUBLE);
+                out.writeLong(bits);
+            });
+        }
+
+        void writeTo(DataOutputStream target) throws IOException {
+            target.writeShort(size);
+            bytes.writeTo(target);
+        }
+
+        private int entry(String key, int slots, EntryWriter writer) {
+            Integer index = indexes.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                writer.write();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            indexes.put(key, size);
+            size += slots;
+            return size - slots;
+        }
+
+        private interface EntryWriter {
+            void write() throws IOException;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package main.model;
+
+import java.util.Arrays;
+
+// Accumulates the instructions and constant pool of an expression while it is being compiled, keeping track of
+// the operand stack depth so that malformed expressions are rejected before anything is evaluated
+final class CodeBuilder {
+    private int[] code;
+    private double[] constants = new double[8];
+    private int codeLength;
+    private int constantCount;
+    private int depth;
+    private int maxDepth;
+
+    CodeBuilder(int expectedLength) {
+        code = new int[Math.max(expectedLength, 8)];
+    }
+
+    void pushConstant(double value) {
+        if (constantCount == constants.length) {
+            constants = Arrays.copyOf(constants, constantCount * 2);
+        }
+        constants[constantCount] = value;
+        append(Opcodes.PUSH_CONSTANT | constantCount++ << Opcodes.OPERAND_SHIFT);
+        push();
+    }
+
+    void loadVariable(int slot) {
+        append(Opcodes.LOAD_VARIABLE | slot << Opcodes.OPERAND_SHIFT);
+        push();
+    }
+
+    // appends an operator, checking that the operands it needs have been pushed before it
+    void applyOperator(int opcode) {
+        if (depth == 0) {
+            throw new IllegalArgumentException("No operand");
+        }
+        if (Opcodes.arity(opcode) == 2) {
+            if (depth < 2) {
+                throw new IllegalArgumentException("Not enough operands for operator");
+            }
+            depth--;
+        }
+        append(opcode);
+    }
+
+    CompiledExpression build(String[] variableNames) {
+        return new CompiledExpression(Arrays.copyOf(code, codeLength), Arrays.copyOf(constants, constantCount),
+                maxDepth, variableNames);
+    }
+
+    private void push() {
+        depth++;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    private void append(int instruction) {
+        if (codeLength == code.length) {
+            code = Arrays.copyOf(code, codeLength * 2);
+        }
+        code[codeLength++] = instruction;
+    }
+}
@@ -0,0 +1,151 @@
+package main.model;
+
+import java.util.EmptyStackException;
+import java.util.List;
+
+// An expression that has already been tokenized and converted to reverse polish notation by MathParser.compile,
+// so it can be evaluated any number of times without repeating that work. Instances are immutable and can be
+// shared between threads.
+// Variables declared at compile time are bound when evaluating: the value of each variable is read from the slot
+// of the values array matching its position in getVariableNames()
+public final class CompiledExpression implements ExpressionEvaluator {
+    private static final double[] NO_VARIABLES = new double[0];
+
+    // operand stack reused by every evaluation on the same thread, so evaluating does not allocate
+    private static final ThreadLocal<double[]> SCRATCH = ThreadLocal.withInitial(() -> new double[16]);
+
+    private final int[] code;
+    private final double[] constants;
+    private final int maxStackDepth;
+    private final List<String> variableNames;
+
+    CompiledExpression(int[] code, double[] constants, int maxStackDepth, String[] variableNames) {
+        this.code = code;
+        this.constants = constants;
+        this.maxStackDepth = maxStackDepth;
+        this.variableNames = List.of(variableNames);
+    }
+
+    public List<String> getVariableNames() {
+        return variableNames;
+    }
+
+    // Returns the slot of the named variable in the values array passed to evaluate, or -1 if it is not declared
+    public int getSlot(String variableName) {
+        return variableNames.indexOf(variableName);
+    }
+
+    public int getInstructionCount() {
+        return code.length;
+    }
+
+    // Size of the operand stack needed by evaluate(double[], double[])
+    public int getMaxStackDepth() {
+        return maxStackDepth;
+    }
+
+    public double evaluate() {
+        return evaluate(NO_VARIABLES);
+    }
+
+    @Override
+    public double evaluate(double[] variables) {
+        double[] stack = SCRATCH.get();
+        if (stack.length < maxStackDepth) {
+            stack = new double[maxStackDepth];
+            SCRATCH.set(stack);
+        }
+        return evaluate(variables, stack);
+    }
+
+    // Operands are pushed as they are read, operators pop their operands and push the result. Operand counts were
+    // already checked at compile time, so only arithmetic errors can happen here. The stack must hold at least
+    // getMaxStackDepth() values
+    public double evaluate(double[] variables, double[] stack) {
+        checkVariables(variables, variableNames.size());
+        if (code.length == 0) {
+            throw new EmptyStackException();
+        }
+
+        int top = -1;
+        for (int instruction : code) {
+            switch (Opcodes.opcode(instruction)) {
+                case Opcodes.PUSH_CONSTANT:
+                    stack[++top] = constants[Opcodes.operand(instruction)];
+                    break;
+                case Opcodes.LOAD_VARIABLE:
+                    stack[++top] = variables[Opcodes.operand(instruction)];
+                    break;
+                case Opcodes.ADD:
+                    top--;
+                    stack[top] = stack[top] + stack[top + 1];
+                    break;
+                case Opcodes.SUBTRACT:
+                    top--;
+                    stack[top] = stack[top] - stack[top + 1];
+                    break;
+                case Opcodes.MULTIPLY:
+                    top--;
+                    stack[top] = stack[top] * stack[top + 1];
+                    break;
+                case Opcodes.DIVIDE:
+                    top--;
+                    stack[top] = divide(stack[top], stack[top + 1]);
+                    break;
+                case Opcodes.POWER:
+                    top--;
+                    stack[top] = Math.pow(stack[top], stack[top + 1]);
+                    break;
+                case Opcodes.SQRT:
+                    stack[top] = Math.sqrt(stack[top]);
+                    break;
+                case Opcodes.LN:
+                    stack[top] = ln(stack[top]);
+                    break;
+                case Opcodes.LOG:
+                    stack[top] = log(stack[top]);
+                    break;
+                case Opcodes.NEGATE:
+                    stack[top] = -stack[top];
+                    break;
+            }
+        }
+
+        return stack[top];
+    }
+
+    static void checkVariables(double[] variables, int variableCount) {
+        if (variables.length < variableCount) {
+            throw new IllegalArgumentException("Expected " + variableCount + " variable values but got " + variables.length);
+        }
+    }
+
+    static double divide(double leftOperand, double rightOperand) {
+        if (rightOperand == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        return leftOperand / rightOperand;
+    }
+
+    static double ln(double operand) {
+        if (operand <= 0) {
+            throw new ArithmeticException("Argument of ln must be positive");
+        }
+        return Math.log(operand);
+    }
+
+    static double log(double operand) {
+        if (operand <= 0) {
+            throw new ArithmeticException("Argument of log must be positive");
+        }
+        return Math.log10(operand);
+    }
+
+    int[] code() {
+        return code;
+    }
+
+    double[] constants() {
+        return constants;
+    }
+}
@@ -0,0 +1,212 @@
+package main.model;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Binary file of compiled expressions, each stored with the source text and variable names it was compiled from, so
+// a restarted process can fill its cache without tokenizing or parsing anything. Expressions are keyed by their
+// MathParser.cacheKey, so the same formula over differently ordered variables is kept apart. The header records
+// whether the programs were optimized and the token budget they were compiled under, and reading rejects a file
+// that a parser with the given settings would not have compiled. All values are big-endian:
+//   file:       magic "XPCE", u16 version, u8 optimized (0 or 1), i32 token budget, i32 expression count, then
+//               the expressions
+//   expression: string source, u16 variable count, a string per variable name in slot order,
+//               i32 instruction count, an i32 per instruction (Opcodes layout),
+//               i32 constant count, an f64 per constant (the exact double the tokenizer parsed)
+//   string:     i32 byte count, UTF-8 bytes
+// Reading checks every variable name and instruction the way MathTokenizer and CodeBuilder do while compiling, so a
+// damaged or hand-made file is rejected with an IOException instead of failing later during evaluation
+public final class CompiledExpressionFile {
+    private static final int MAGIC = 0x58504345; // "XPCE"
+    private static final int VERSION = 2;
+
+    private CompiledExpressionFile() {
+    }
+
+    // Writes the expressions, keyed by MathParser.cacheKey, in iteration order. optimized and tokenBudget are the
+    // settings of the parser that compiled them
+    public static void write(Path file, Map<String, CompiledExpression> expressions, boolean optimized, int tokenBudget)
+            throws IOException {
+        long size = 4 + 2 + 1 + 4 + 4;
+        for (Map.Entry<String, CompiledExpression> entry : expressions.entrySet()) {
+            size += sizeOf(source(entry.getKey(), entry.getValue()), entry.getValue());
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Too many compiled expressions for one file: " + expressions.size());
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC).putShort((short) VERSION).put((byte) (optimized ? 1 : 0)).putInt(tokenBudget)
+                .putInt(expressions.size());
+        for (Map.Entry<String, CompiledExpression> entry : expressions.entrySet()) {
+            CompiledExpression expression = entry.getValue();
+            putString(buffer, source(entry.getKey(), expression));
+            List<String> variableNames = expression.getVariableNames();
+            buffer.putShort((short) variableNames.size());
+            for (String variableName : variableNames) {
+                putString(buffer, variableName);
+            }
+            buffer.putInt(expression.code().length).asIntBuffer().put(expression.code());
+            buffer.position(buffer.position() + 4 * expression.code().length);
+            buffer.putInt(expression.constants().length).asDoubleBuffer().put(expression.constants());
+            buffer.position(buffer.position() + 8 * expression.constants().length);
+        }
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    // Maps the file into memory and reads every expression in it, keyed by MathParser.cacheKey, in the order written.
+    // The file must have been written by a parser that optimizes exactly when optimized is set, with a token budget
+    // no larger than tokenBudget, so that every program in it is one a parser with these settings compiles
+    public static Map<String, CompiledExpression> read(Path file, boolean optimized, int tokenBudget) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Compiled expression file too large: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer, optimized, tokenBudget);
+        }
+    }
+
+    static Map<String, CompiledExpression> read(ByteBuffer buffer, boolean optimized, int tokenBudget)
+            throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a compiled expression file");
+            }
+            int version = buffer.getShort() & 0xffff;
+            if (version != VERSION) {
+                throw new IOException("Unsupported compiled expression file version: " + version);
+            }
+            boolean fileOptimized = buffer.get() != 0;
+            int fileTokenBudget = buffer.getInt();
+            if (fileOptimized != optimized) {
+                throw new IOException(fileOptimized ? "Compiled expressions are optimized, the parser does not optimize"
+                        : "Compiled expressions are not optimized, the parser optimizes");
+            }
+            if (fileTokenBudget > tokenBudget) {
+                throw new IOException("Compiled expressions have a token budget of " + fileTokenBudget
+                        + ", more than the parser's " + tokenBudget);
+            }
+            int count = checkCount(buffer.getInt(), buffer, 4);
+            Map<String, CompiledExpression> expressions = new LinkedHashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String source = getString(buffer);
+                if (source.indexOf('\0') >= 0) {
+                    throw new IOException("Invalid source text in compiled expression file");
+                }
+                String[] variableNames = new String[buffer.getShort() & 0xffff];
+                for (int slot = 0; slot < variableNames.length; slot++) {
+                    variableNames[slot] = getString(buffer);
+                }
+                try {
+                    MathTokenizer.checkVariableNames(variableNames);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(e.getMessage() + " in compiled expression: " + source, e);
+                }
+                int[] code = new int[checkCount(buffer.getInt(), buffer, 4)];
+                buffer.asIntBuffer().get(code);
+                buffer.position(buffer.position() + 4 * code.length);
+                double[] constants = new double[checkCount(buffer.getInt(), buffer, 8)];
+                buffer.asDoubleBuffer().get(constants);
+                buffer.position(buffer.position() + 8 * constants.length);
+
+                int maxStackDepth = verify(code, constants.length, variableNames.length, source);
+                expressions.put(MathParser.cacheKey(source, variableNames),
+                        new CompiledExpression(code, constants, maxStackDepth, variableNames));
+            }
+            if (buffer.hasRemaining()) {
+                throw new IOException("Unexpected data after the last compiled expression");
+            }
+            return expressions;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Compiled expression file is truncated", e);
+        }
+    }
+
+    // Checks operands and operand counts like CodeBuilder, and returns the stack depth the code needs
+    private static int verify(int[] code, int constantCount, int variableCount, String source) throws IOException {
+        int depth = 0;
+        int maxDepth = 0;
+        for (int instruction : code) {
+            int opcode = Opcodes.opcode(instruction);
+            int operand = Opcodes.operand(instruction);
+            switch (opcode) {
+                case Opcodes.PUSH_CONSTANT, Opcodes.LOAD_VARIABLE -> {
+                    int limit = opcode == Opcodes.PUSH_CONSTANT ? constantCount : variableCount;
+                    if (operand >= limit) {
+                        throw new IOException("Operand out of range in compiled expression: " + source);
+                    }
+                    maxDepth = Math.max(maxDepth, ++depth);
+                }
+                case Opcodes.ADD, Opcodes.SUBTRACT, Opcodes.MULTIPLY, Opcodes.DIVIDE, Opcodes.POWER,
+                     Opcodes.SQRT, Opcodes.LN, Opcodes.LOG, Opcodes.NEGATE -> {
+                    if (operand != 0 || depth < Opcodes.arity(opcode)) {
+                        throw new IOException("Invalid instruction in compiled expression: " + source);
+                    }
+                    depth -= Opcodes.arity(opcode) - 1;
+                }
+                default -> throw new IOException("Unknown opcode " + opcode + " in compiled expression: " + source);
+            }
+        }
+        return maxDepth;
+    }
+
+    // Rejects counts that could not fit in what is left of the file before allocating anything for them
+    private static int checkCount(int count, ByteBuffer buffer, int bytesPerElement) throws IOException {
+        if (count < 0 || (long) count * bytesPerElement > buffer.remaining()) {
+            throw new IOException("Compiled expression file is truncated");
+        }
+        return count;
+    }
+
+    // The source text of the expression that key is the cache key of
+    private static String source(String key, CompiledExpression expression) {
+        String[] variableNames = expression.getVariableNames().toArray(new String[0]);
+        String suffix = MathParser.cacheKey("", variableNames);
+        int end = key.length() - suffix.length();
+        // the source itself never holds the separator, so a key for other variables cannot pass for this one
+        if (!key.endsWith(suffix) || key.lastIndexOf('\0', end - 1) >= 0) {
+            throw new IllegalArgumentException("Not the cache key of an expression over " + expression.getVariableNames());
+        }
+        return key.substring(0, end);
+    }
+
+    private static long sizeOf(String source, CompiledExpression expression) {
+        long size = 4 + utf8Length(source) + 2;
+        for (String variableName : expression.getVariableNames()) {
+            size += 4 + utf8Length(variableName);
+        }
+        return size + 4 + 4L * expression.code().length + 4 + 8L * expression.constants().length;
+    }
+
+    private static int utf8Length(String string) {
+        return string.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void putString(ByteBuffer buffer, String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) throws IOException {
+        int length = checkCount(buffer.getInt(), buffer, 1);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,141 @@
+package main.model;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+// The functions BigDecimal lacks, for PreciseExpression: e^x, ln x, log x, e and π to any precision. Each result is
+// computed with guard digits and then rounded to the precision asked for, so it is within one ulp of the exact value
+final class DecimalMath {
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+    private static final BigDecimal HALF = new BigDecimal("0.5");
+    // beyond this e^x is larger than a BigDecimal can hold
+    private static final BigDecimal EXP_LIMIT = BigDecimal.valueOf(1_000_000_000);
+
+    // rounding errors of the series terms cost fewer than this many digits
+    private static final int GUARD_DIGITS = 10;
+
+    private DecimalMath() {
+    }
+
+    static BigDecimal exp(BigDecimal x, MathContext mc) {
+        if (x.signum() == 0) {
+            return BigDecimal.ONE;
+        }
+        if (x.abs().compareTo(EXP_LIMIT) >= 0) {
+            throw new ArithmeticException("Result is too large");
+        }
+        // e^x = (e^(x÷2^k))^2^k with x÷2^k below 1/256, where the series converges quickly. Each squaring doubles
+        // the relative error, so k more bits of guard are needed
+        int k = Math.max(0, x.precision() - x.scale()) * 4 + 8;
+        MathContext wc = new MathContext(mc.getPrecision() + GUARD_DIGITS + k * 3 / 10 + 1);
+        BigDecimal y = x.multiply(HALF.pow(k), wc);
+
+        BigDecimal sum = BigDecimal.ONE;
+        BigDecimal term = BigDecimal.ONE;
+        for (int n = 1; ; n++) {
+            term = term.multiply(y, wc).divide(BigDecimal.valueOf(n), wc);
+            if (negligible(term, sum, wc)) {
+                break;
+            }
+            sum = sum.add(term, wc);
+        }
+        for (int i = 0; i < k; i++) {
+            sum = sum.multiply(sum, wc);
+        }
+        return sum.round(mc);
+    }
+
+    // x must be positive
+    static BigDecimal ln(BigDecimal x, MathContext mc) {
+        if (x.compareTo(BigDecimal.ONE) == 0) {
+            return BigDecimal.ZERO;
+        }
+        // x = t × 2^j × 10^e with t in [1, 2). Near 1 the series is used directly, so small results lose nothing to
+        // cancellation; elsewhere |ln x| is at least ln 2 and the terms are at most about e ln 10, so as many more
+        // digits as e has are enough
+        int exponent = x.precision() - x.scale() - 1;
+        MathContext wc = new MathContext(mc.getPrecision() + GUARD_DIGITS + Integer.toString(exponent).length());
+        if (x.compareTo(HALF) >= 0 && x.compareTo(TWO) <= 0) {
+            return lnNearOne(x, wc).round(mc);
+        }
+        BigDecimal m = x.movePointLeft(exponent);
+        int j = 31 - Integer.numberOfLeadingZeros(m.intValue());
+        BigDecimal t = m.multiply(HALF.pow(j));
+        BigDecimal sum = lnNearOne(t, wc).add(ln2(wc).multiply(BigDecimal.valueOf(j), wc), wc);
+        if (exponent != 0) {
+            sum = sum.add(ln10(wc).multiply(BigDecimal.valueOf(exponent), wc), wc);
+        }
+        return sum.round(mc);
+    }
+
+    // x must be positive
+    static BigDecimal log10(BigDecimal x, MathContext mc) {
+        MathContext wc = new MathContext(mc.getPrecision() + GUARD_DIGITS);
+        return ln(x, wc).divide(ln10(wc), mc);
+    }
+
+    static BigDecimal e(MathContext mc) {
+        return exp(BigDecimal.ONE, mc);
+    }
+
+    // Machin's formula, π = 16 atan(1/5) - 4 atan(1/239)
+    static BigDecimal pi(MathContext mc) {
+        MathContext wc = new MathContext(mc.getPrecision() + GUARD_DIGITS);
+        BigDecimal pi = inverseArctan(5, wc).multiply(BigDecimal.valueOf(16))
+                .subtract(inverseArctan(239, wc).multiply(BigDecimal.valueOf(4)), wc);
+        return pi.round(mc);
+    }
+
+    // ln 2 = 2 atanh(1/3)
+    private static BigDecimal ln2(MathContext mc) {
+        return atanh(BigDecimal.ONE.divide(BigDecimal.valueOf(3), mc), mc).multiply(TWO);
+    }
+
+    // ln 10 = 3 ln 2 + ln 1.25, and ln 1.25 = 2 atanh(1/9)
+    private static BigDecimal ln10(MathContext mc) {
+        BigDecimal ln125 = atanh(BigDecimal.ONE.divide(BigDecimal.valueOf(9), mc), mc).multiply(TWO);
+        return ln2(mc).multiply(BigDecimal.valueOf(3)).add(ln125, mc);
+    }
+
+    // ln x = 2 atanh((x-1)÷(x+1)), for x between 1/2 and 2 where (x-1)÷(x+1) is at most 1/3 in size
+    private static BigDecimal lnNearOne(BigDecimal x, MathContext mc) {
+        BigDecimal z = x.subtract(BigDecimal.ONE).divide(x.add(BigDecimal.ONE), mc);
+        return atanh(z, mc).multiply(TWO);
+    }
+
+    // z + z^3/3 + z^5/5 + ...
+    private static BigDecimal atanh(BigDecimal z, MathContext mc) {
+        BigDecimal zSquared = z.multiply(z, mc);
+        BigDecimal power = z;
+        BigDecimal sum = z;
+        for (int n = 3; ; n += 2) {
+            power = power.multiply(zSquared, mc);
+            BigDecimal term = power.divide(BigDecimal.valueOf(n), mc);
+            if (negligible(term, sum, mc)) {
+                return sum;
+            }
+            sum = sum.add(term, mc);
+        }
+    }
+
+    // atan(1/n) = 1/n - 1/(3n^3) + 1/(5n^5) - ...
+    private static BigDecimal inverseArctan(int n, MathContext mc) {
+        BigDecimal nSquared = BigDecimal.valueOf((long) n * n);
+        BigDecimal power = BigDecimal.ONE.divide(BigDecimal.valueOf(n), mc);
+        BigDecimal sum = power;
+        for (int k = 3; ; k += 2) {
+            power = power.divide(nSquared, mc);
+            BigDecimal term = power.divide(BigDecimal.valueOf(k), mc);
+            if (negligible(term, sum, mc)) {
+                return sum;
+            }
+            sum = (k & 2) != 0 ? sum.subtract(term, mc) : sum.add(term, mc);
+        }
+    }
+
+    // whether adding term no longer changes sum at the precision of mc. The ulp of sum itself is no guide, as a
+    // partial sum such as 1/5 can be exact with few digits
+    private static boolean negligible(BigDecimal term, BigDecimal sum, MathContext mc) {
+        return term.signum() == 0 || term.abs().compareTo(sum.abs().movePointLeft(mc.getPrecision())) < 0;
+    }
+}
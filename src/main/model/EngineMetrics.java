@@ -0,0 +1,164 @@
+package main.model;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters for MathParser.parseExpression calls, failed ones included, updated by every parser created with them and
+// readable over JMX once registered. Counting is exact and costs an uncontended add per call. Reading the clock
+// costs more than evaluating a cached expression, so only a random sample of calls, one in latencySampleRate, is
+// timed for the latency percentiles. Cache hits and misses are read from the cache given here, which should be the
+// one the parsers use. Evaluations of the PreciseExpressions the parsers compile are counted too, with how many of
+// them needed BigDecimal
+public final class EngineMetrics implements EngineMetricsMBean {
+    public static final int DEFAULT_LATENCY_SAMPLE_RATE = 64;
+
+    private final ExpressionCache cache;
+    private final int latencySampleRate;
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder syntaxErrors = new LongAdder();
+    private final LongAdder arithmeticErrors = new LongAdder();
+    private final LongAdder emptyExpressions = new LongAdder();
+    private final LongAdder preciseEvaluations = new LongAdder();
+    private final LongAdder preciseFallbacks = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    public EngineMetrics() {
+        this(null);
+    }
+
+    public EngineMetrics(ExpressionCache cache) {
+        this(cache, DEFAULT_LATENCY_SAMPLE_RATE);
+    }
+
+    public EngineMetrics(ExpressionCache cache, int latencySampleRate) {
+        if (latencySampleRate < 1) {
+            throw new IllegalArgumentException("Sample rate must be positive: " + latencySampleRate);
+        }
+        this.cache = cache;
+        this.latencySampleRate = latencySampleRate;
+    }
+
+    // Registers these metrics with the platform MBean server as xpressioncalc:type=EngineMetrics,name=<name>
+    public ObjectName register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("xpressioncalc:type=EngineMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register metrics " + name, e);
+        }
+    }
+
+    public static void unregister(ObjectName objectName) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister metrics " + objectName, e);
+        }
+    }
+
+    // Whether the call about to be made should be timed
+    boolean sampleLatency() {
+        return latencySampleRate == 1 || ThreadLocalRandom.current().nextInt(latencySampleRate) == 0;
+    }
+
+    void recordEvaluation() {
+        evaluations.increment();
+    }
+
+    void recordLatency(long nanos) {
+        latencies.record(nanos);
+    }
+
+    void recordSyntaxError() {
+        syntaxErrors.increment();
+    }
+
+    void recordArithmeticError() {
+        arithmeticErrors.increment();
+    }
+
+    void recordEmptyExpression() {
+        emptyExpressions.increment();
+    }
+
+    void recordPreciseEvaluation() {
+        preciseEvaluations.increment();
+    }
+
+    void recordPreciseFallback() {
+        preciseFallbacks.increment();
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    @Override
+    public long getEvaluationCount() {
+        return evaluations.sum();
+    }
+
+    @Override
+    public long getSyntaxErrorCount() {
+        return syntaxErrors.sum();
+    }
+
+    @Override
+    public long getArithmeticErrorCount() {
+        return arithmeticErrors.sum();
+    }
+
+    @Override
+    public long getEmptyExpressionCount() {
+        return emptyExpressions.sum();
+    }
+
+    @Override
+    public long getPreciseEvaluationCount() {
+        return preciseEvaluations.sum();
+    }
+
+    @Override
+    public long getPreciseFallbackCount() {
+        return preciseFallbacks.sum();
+    }
+
+    @Override
+    public long getCacheHitCount() {
+        return cache == null ? 0 : cache.getHitCount();
+    }
+
+    @Override
+    public long getCacheMissCount() {
+        return cache == null ? 0 : cache.getMissCount();
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return latencies.getPercentile(50) / 1000;
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return latencies.getPercentile(99) / 1000;
+    }
+
+    @Override
+    public void reset() {
+        evaluations.reset();
+        syntaxErrors.reset();
+        arithmeticErrors.reset();
+        emptyExpressions.reset();
+        preciseEvaluations.reset();
+        preciseFallbacks.reset();
+        latencies.reset();
+    }
+}
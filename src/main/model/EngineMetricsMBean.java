@@ -0,0 +1,27 @@
+package main.model;
+
+// Management interface of EngineMetrics, as seen in JConsole or any other JMX client. Latencies are in
+// microseconds
+public interface EngineMetricsMBean {
+    long getEvaluationCount();
+
+    long getSyntaxErrorCount();
+
+    long getArithmeticErrorCount();
+
+    long getEmptyExpressionCount();
+
+    long getPreciseEvaluationCount();
+
+    long getPreciseFallbackCount();
+
+    long getCacheHitCount();
+
+    long getCacheMissCount();
+
+    long getLatencyP50Micros();
+
+    long getLatencyP99Micros();
+
+    void reset();
+}
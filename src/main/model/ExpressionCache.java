@@ -0,0 +1,145 @@
+package main.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// A size-bounded cache of compiled expressions keyed by their source string, shared by any number of threads.
+// Entries are spread over independently locked segments, each evicting its least recently used entry once it is
+// full, so lookups for different formulas rarely contend with each other
+public final class ExpressionCache {
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final int maximumSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ExpressionCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        int segmentCount = Math.min(MAX_SEGMENTS, Integer.highestOneBit(maximumSize));
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            // share the capacity out so the segments add up to exactly maximumSize
+            segments[i] = new Segment(maximumSize / segmentCount + (i < maximumSize % segmentCount ? 1 : 0));
+        }
+    }
+
+    // Returns the cached expression for key, compiling and caching it on a miss. Compilation happens outside the
+    // segment lock, so two threads missing on the same key at once may both compile it; the first one is kept.
+    // Expressions that fail to compile are not cached
+    public CompiledExpression get(String key, Function<String, CompiledExpression> compiler) {
+        Segment segment = segmentFor(key);
+        CompiledExpression expression = segment.get(key);
+        if (expression != null) {
+            hits.increment();
+            return expression;
+        }
+
+        misses.increment();
+        return segment.putIfAbsent(key, compiler.apply(key));
+    }
+
+    // Adds an expression compiled elsewhere, for example read back from a CompiledExpressionFile, unless key is
+    // already cached. Returns the cached expression. Counts neither as a hit nor as a miss
+    public CompiledExpression putIfAbsent(String key, CompiledExpression expression) {
+        return segmentFor(key).putIfAbsent(key, expression);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ hash >>> 16) & segments.length - 1];
+    }
+
+    private final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, CompiledExpression> entries;
+
+        Segment(int capacity) {
+            // access ordered, so the eldest entry is the least recently used one
+            entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        CompiledExpression get(String key) {
+            lock.lock();
+            try {
+                return entries.get(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        CompiledExpression putIfAbsent(String key, CompiledExpression expression) {
+            lock.lock();
+            try {
+                CompiledExpression existing = entries.putIfAbsent(key, expression);
+                return existing != null ? existing : expression;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return entries.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                entries.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package main.model;
+
+// Something that computes the value of an expression for a set of variable values, read from the slots of the
+// array in the order the variables were declared when compiling the expression
+public interface ExpressionEvaluator {
+    double evaluate(double[] variables);
+}
@@ -0,0 +1,58 @@
+package main.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Flight Recorder events for the phases of MathParser. They are disabled unless a recording turns them on, e.g.
+// with -XX:StartFlightRecording. While disabled, creating one is removed by escape analysis and begin, end and
+// shouldCommit do nothing, so the instrumented code runs as if they were not there.
+// Parentheses are checked for balance while tokenizing, in the same pass, so that check is part of Tokenize
+final class ExpressionEvents {
+    private static final String CATEGORY = "XpressionCalc";
+
+    private ExpressionEvents() {
+    }
+
+    @Name("xpressioncalc.Tokenize")
+    @Label("Tokenize")
+    @Description("Splits an expression into tokens and checks that its parentheses balance")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class Tokenize extends Event {
+        @Label("Expression Length")
+        int expressionLength;
+
+        @Label("Token Count")
+        int tokenCount;
+    }
+
+    @Name("xpressioncalc.Parse")
+    @Label("Parse")
+    @Description("Converts tokens to instructions and optimizes them")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class Parse extends Event {
+        @Label("Token Count")
+        int tokenCount;
+
+        @Label("Instruction Count")
+        int instructionCount;
+    }
+
+    @Name("xpressioncalc.Evaluate")
+    @Label("Evaluate")
+    @Description("Evaluates a compiled expression")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class Evaluate extends Event {
+        @Label("Expression Length")
+        int expressionLength;
+
+        @Label("Instruction Count")
+        int instructionCount;
+    }
+}
@@ -0,0 +1,186 @@
+package main.model;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Several expressions over the same variables compiled into one program by MathParser.compileGroup. Identical
+// sub-expressions, within one expression or across several, are stored once and computed once per evaluation,
+// so a group of formulas that all contain ln(x+1) only computes x+1 and its logarithm one time.
+// Each expression gives exactly the same result as evaluating it on its own. Evaluation throws whenever
+// evaluating any one of the expressions on its own would throw. Instances are immutable and can be shared between
+// threads
+public final class ExpressionGroup {
+    // values of the nodes, reused by every evaluation on the same thread
+    private static final ThreadLocal<double[]> SCRATCH = ThreadLocal.withInitial(() -> new double[64]);
+
+    // Nodes are stored in parallel arrays and listed after all of their operands, so computing them in index order
+    // always finds the operands ready
+    private final int[] opcodes;
+    private final int[] left;
+    private final int[] right;
+    private final double[] values; // value of constants, slot of variables
+    private final int[] results; // node holding the result of each expression, -1 for an empty expression
+    private final List<String> variableNames;
+
+    private ExpressionGroup(Builder builder, int[] results, String[] variableNames) {
+        this.opcodes = Arrays.copyOf(builder.opcodes, builder.nodeCount);
+        this.left = Arrays.copyOf(builder.left, builder.nodeCount);
+        this.right = Arrays.copyOf(builder.right, builder.nodeCount);
+        this.values = Arrays.copyOf(builder.values, builder.nodeCount);
+        this.results = results;
+        this.variableNames = List.of(variableNames);
+    }
+
+    static ExpressionGroup of(List<CompiledExpression> expressions, String[] variableNames) {
+        Builder builder = new Builder();
+        int[] results = new int[expressions.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = builder.add(expressions.get(i));
+        }
+        return new ExpressionGroup(builder, results, variableNames);
+    }
+
+    public List<String> getVariableNames() {
+        return variableNames;
+    }
+
+    public int getExpressionCount() {
+        return results.length;
+    }
+
+    // Number of distinct operations computed per evaluation, constants and variables included
+    public int getNodeCount() {
+        return opcodes.length;
+    }
+
+    public double[] evaluate(double[] variables) {
+        double[] out = new double[results.length];
+        evaluate(variables, out);
+        return out;
+    }
+
+    // Writes the result of expression i to out[i]
+    public void evaluate(double[] variables, double[] out) {
+        CompiledExpression.checkVariables(variables, variableNames.size());
+        if (out.length < results.length) {
+            throw new IllegalArgumentException("Expected room for " + results.length + " results but got " + out.length);
+        }
+        double[] node = SCRATCH.get();
+        if (node.length < opcodes.length) {
+            node = new double[opcodes.length];
+            SCRATCH.set(node);
+        }
+
+        for (int i = 0; i < opcodes.length; i++) {
+            switch (opcodes[i]) {
+                case Opcodes.PUSH_CONSTANT:
+                    node[i] = values[i];
+                    break;
+                case Opcodes.LOAD_VARIABLE:
+                    node[i] = variables[(int) values[i]];
+                    break;
+                case Opcodes.ADD:
+                    node[i] = node[left[i]] + node[right[i]];
+                    break;
+                case Opcodes.SUBTRACT:
+                    node[i] = node[left[i]] - node[right[i]];
+                    break;
+                case Opcodes.MULTIPLY:
+                    node[i] = node[left[i]] * node[right[i]];
+                    break;
+                case Opcodes.DIVIDE:
+                    node[i] = CompiledExpression.divide(node[left[i]], node[right[i]]);
+                    break;
+                case Opcodes.POWER:
+                    node[i] = Math.pow(node[left[i]], node[right[i]]);
+                    break;
+                case Opcodes.SQRT:
+                    node[i] = Math.sqrt(node[left[i]]);
+                    break;
+                case Opcodes.LN:
+                    node[i] = CompiledExpression.ln(node[left[i]]);
+                    break;
+                case Opcodes.LOG:
+                    node[i] = CompiledExpression.log(node[left[i]]);
+                    break;
+                case Opcodes.NEGATE:
+                    node[i] = -node[left[i]];
+                    break;
+            }
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] < 0) {
+                throw new EmptyStackException();
+            }
+            out[i] = node[results[i]];
+        }
+    }
+
+    // Hash-conses the instructions of each expression into shared nodes. Nodes are keyed on their opcode and on
+    // their operand nodes, or their exact value for constants, so x+1 is one node wherever it appears
+    private static final class Builder {
+        private final Map<NodeKey, Integer> nodes = new HashMap<>();
+        private int[] opcodes = new int[16];
+        private int[] left = new int[16];
+        private int[] right = new int[16];
+        private double[] values = new double[16];
+        private int nodeCount;
+
+        private record NodeKey(int opcode, int left, int right, long valueBits) {
+        }
+
+        int add(CompiledExpression expression) {
+            int[] code = expression.code();
+            if (code.length == 0) {
+                return -1;
+            }
+            double[] constants = expression.constants();
+            int[] stack = new int[expression.getMaxStackDepth()];
+            int top = -1;
+            // operands left below the result (as in "2 3") stay in the group, since computing them may throw
+            for (int instruction : code) {
+                int opcode = Opcodes.opcode(instruction);
+                switch (Opcodes.arity(opcode)) {
+                    case 0:
+                        double value = opcode == Opcodes.PUSH_CONSTANT ? constants[Opcodes.operand(instruction)] : Opcodes.operand(instruction);
+                        stack[++top] = node(opcode, -1, -1, value);
+                        break;
+                    case 1:
+                        stack[top] = node(opcode, stack[top], -1, 0);
+                        break;
+                    default:
+                        int rightOperand = stack[top--];
+                        stack[top] = node(opcode, stack[top], rightOperand, 0);
+                        break;
+                }
+            }
+            return stack[top];
+        }
+
+        private int node(int opcode, int leftOperand, int rightOperand, double value) {
+            // raw bits keep 0 and -0 apart, and NaN constants with different payloads
+            NodeKey key = new NodeKey(opcode, leftOperand, rightOperand, Double.doubleToRawLongBits(value));
+            Integer existing = nodes.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            if (nodeCount == opcodes.length) {
+                int capacity = nodeCount * 2;
+                opcodes = Arrays.copyOf(opcodes, capacity);
+                left = Arrays.copyOf(left, capacity);
+                right = Arrays.copyOf(right, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            opcodes[nodeCount] = opcode;
+            left[nodeCount] = leftOperand;
+            right[nodeCount] = rightOperand;
+            values[nodeCount] = value;
+            nodes.put(key, nodeCount);
+            return nodeCount++;
+        }
+    }
+}
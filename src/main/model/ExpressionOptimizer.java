@@ -0,0 +1,196 @@
+package main.model;
+
+import java.util.Arrays;
+
+// Simplifies a compiled expression without changing any result it can produce, bit for bit, or any exception it
+// can throw:
+// - sub-expressions made only of constants are computed once, unless computing them throws (division by zero,
+//   ln or log of a non-positive number), in which case they are kept so evaluation still fails the same way
+// - multiplication by -1, including the (0-1) that unary en dash expands to, becomes a single NEGATE
+// - ×1, 1×, ÷1, ^1, -0 and +(-0) are removed. +0 is kept because it turns -0 into 0
+// The program is rebuilt as an expression tree in one pass over the instructions, folding each node as it is
+// created, and written back out in one more pass, so it runs in linear time whatever the nesting depth
+final class ExpressionOptimizer {
+    private static final long MINUS_ONE_BITS = Double.doubleToLongBits(-1.0);
+    private static final long ONE_BITS = Double.doubleToLongBits(1.0);
+    private static final long ZERO_BITS = Double.doubleToLongBits(0.0);
+    private static final long NEGATIVE_ZERO_BITS = Double.doubleToLongBits(-0.0);
+
+    // Nodes are stored in parallel arrays. Children are always created before their parent, and the whole left
+    // subtree before the right one, so walking the nodes reachable from the root in index order is a post-order
+    // traversal, which is exactly the order the instructions have to be written in
+    private int[] opcodes;
+    private int[] left;
+    private int[] right;
+    private double[] values; // value of constants, slot of variables
+    private int nodeCount;
+
+    private ExpressionOptimizer(int capacity) {
+        opcodes = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        values = new double[capacity];
+    }
+
+    static CompiledExpression optimize(CompiledExpression expression) {
+        int[] code = expression.code();
+        if (code.length == 0) {
+            return expression;
+        }
+        return new ExpressionOptimizer(code.length).rewrite(expression);
+    }
+
+    private CompiledExpression rewrite(CompiledExpression expression) {
+        int[] code = expression.code();
+        double[] constants = expression.constants();
+        int[] stack = new int[expression.getMaxStackDepth()];
+        int top = -1;
+
+        for (int instruction : code) {
+            int opcode = Opcodes.opcode(instruction);
+            switch (opcode) {
+                case Opcodes.PUSH_CONSTANT:
+                    stack[++top] = constant(constants[Opcodes.operand(instruction)]);
+                    break;
+                case Opcodes.LOAD_VARIABLE:
+                    stack[++top] = node(opcode, -1, -1, Opcodes.operand(instruction));
+                    break;
+                default:
+                    if (Opcodes.arity(opcode) == 1) {
+                        stack[top] = unary(opcode, stack[top]);
+                    } else {
+                        int rightOperand = stack[top--];
+                        stack[top] = binary(opcode, stack[top], rightOperand);
+                    }
+                    break;
+            }
+        }
+
+        // operands left below the result (as in "2 3") are still evaluated, since they may throw
+        return emit(stack, top, expression.getVariableNames().toArray(new String[0]));
+    }
+
+    private int unary(int opcode, int operand) {
+        if (isConstant(operand)) {
+            double value = values[operand];
+            switch (opcode) {
+                case Opcodes.SQRT:
+                    return constant(Math.sqrt(value));
+                case Opcodes.NEGATE:
+                    return constant(-value);
+                case Opcodes.LN:
+                    if (!(value <= 0)) {
+                        return constant(Math.log(value));
+                    }
+                    break;
+                case Opcodes.LOG:
+                    if (!(value <= 0)) {
+                        return constant(Math.log10(value));
+                    }
+                    break;
+            }
+        }
+        if (opcode == Opcodes.NEGATE && opcodes[operand] == Opcodes.NEGATE) {
+            return left[operand];
+        }
+        return node(opcode, operand, -1, 0);
+    }
+
+    private int binary(int opcode, int leftOperand, int rightOperand) {
+        if (isConstant(leftOperand) && isConstant(rightOperand)) {
+            double leftValue = values[leftOperand];
+            double rightValue = values[rightOperand];
+            switch (opcode) {
+                case Opcodes.ADD:
+                    return constant(leftValue + rightValue);
+                case Opcodes.SUBTRACT:
+                    return constant(leftValue - rightValue);
+                case Opcodes.MULTIPLY:
+                    return constant(leftValue * rightValue);
+                case Opcodes.POWER:
+                    return constant(Math.pow(leftValue, rightValue));
+                case Opcodes.DIVIDE:
+                    if (rightValue != 0) {
+                        return constant(leftValue / rightValue);
+                    }
+                    break;
+            }
+        }
+
+        switch (opcode) {
+            case Opcodes.MULTIPLY:
+                if (isConstant(leftOperand, MINUS_ONE_BITS)) return unary(Opcodes.NEGATE, rightOperand);
+                if (isConstant(rightOperand, MINUS_ONE_BITS)) return unary(Opcodes.NEGATE, leftOperand);
+                if (isConstant(leftOperand, ONE_BITS)) return rightOperand;
+                if (isConstant(rightOperand, ONE_BITS)) return leftOperand;
+                break;
+            case Opcodes.DIVIDE:
+            case Opcodes.POWER:
+                if (isConstant(rightOperand, ONE_BITS)) return leftOperand;
+                break;
+            case Opcodes.SUBTRACT:
+                if (isConstant(rightOperand, ZERO_BITS)) return leftOperand;
+                break;
+            case Opcodes.ADD:
+                if (isConstant(leftOperand, NEGATIVE_ZERO_BITS)) return rightOperand;
+                if (isConstant(rightOperand, NEGATIVE_ZERO_BITS)) return leftOperand;
+                break;
+        }
+        return node(opcode, leftOperand, rightOperand, 0);
+    }
+
+    private boolean isConstant(int node) {
+        return opcodes[node] == Opcodes.PUSH_CONSTANT;
+    }
+
+    private boolean isConstant(int node, long bits) {
+        return isConstant(node) && Double.doubleToRawLongBits(values[node]) == bits;
+    }
+
+    private int constant(double value) {
+        return node(Opcodes.PUSH_CONSTANT, -1, -1, value);
+    }
+
+    private int node(int opcode, int leftOperand, int rightOperand, double value) {
+        if (nodeCount == opcodes.length) {
+            int capacity = nodeCount * 2;
+            opcodes = Arrays.copyOf(opcodes, capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        opcodes[nodeCount] = opcode;
+        left[nodeCount] = leftOperand;
+        right[nodeCount] = rightOperand;
+        values[nodeCount] = value;
+        return nodeCount++;
+    }
+
+    private CompiledExpression emit(int[] roots, int top, String[] variableNames) {
+        // parents always come after their children, so one backwards sweep finds every node still in use
+        int root = roots[top];
+        boolean[] reachable = new boolean[root + 1];
+        for (int i = 0; i <= top; i++) {
+            reachable[roots[i]] = true;
+        }
+        for (int node = root; node >= 0; node--) {
+            if (reachable[node]) {
+                if (left[node] >= 0) reachable[left[node]] = true;
+                if (right[node] >= 0) reachable[right[node]] = true;
+            }
+        }
+
+        CodeBuilder output = new CodeBuilder(root + 1);
+        for (int node = 0; node <= root; node++) {
+            if (!reachable[node]) {
+                continue;
+            }
+            switch (opcodes[node]) {
+                case Opcodes.PUSH_CONSTANT -> output.pushConstant(values[node]);
+                case Opcodes.LOAD_VARIABLE -> output.loadVariable((int) values[node]);
+                default -> output.applyOperator(opcodes[node]);
+            }
+        }
+        return output.build(variableNames);
+    }
+}
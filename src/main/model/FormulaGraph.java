@@ -0,0 +1,394 @@
+package main.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Named inputs and formulas, spreadsheet style, where a formula can use any input or formula defined before it by
+// name. Each formula knows the nodes it reads and the nodes that read it. Changing an input marks only the
+// formulas that depend on it, directly or not, as dirty, and recompute() evaluates just those, so the cost of a
+// change depends on how many formulas it affects, not on how many there are.
+// Every node has a level, 0 for inputs and one more than the highest level among its operands for formulas.
+// Dirty formulas are recomputed level by level, and as formulas on the same level never depend on each other,
+// recomputeParallel() spreads each level over a ForkJoinPool.
+// A formula that fails to evaluate, or that uses a formula that failed, has no value: getValue throws the
+// ArithmeticException of the first failure. Reading a value recomputes dirty formulas first.
+// Not safe for use by several threads at once
+public final class FormulaGraph {
+    public static final int DEFAULT_CHUNK_SIZE = 256;
+
+    private final MathParser parser = new MathParser();
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final Map<String, Node> nodes = new HashMap<>();
+    private int longestName;
+
+    // dirty formulas, in the order they were marked
+    private Node[] dirty = new Node[16];
+    private int dirtyCount;
+
+    private static final class Node {
+        final String name;
+        double value;
+        ArithmeticException failure;
+        int level;
+        boolean dirty;
+
+        // formulas only: the compiled text, the nodes it reads with the variable slot each one is bound to, and the
+        // values passed to the expression
+        String formula;
+        CompiledExpression expression;
+        Node[] operands;
+        int[] slots;
+        double[] arguments;
+
+        // formulas reading this node
+        Node[] dependents = new Node[2];
+        int dependentCount;
+
+        Node(String name) {
+            this.name = name;
+        }
+
+        boolean isInput() {
+            return expression == null;
+        }
+
+        void addDependent(Node dependent) {
+            if (dependentCount == dependents.length) {
+                dependents = Arrays.copyOf(dependents, dependentCount * 2);
+            }
+            dependents[dependentCount++] = dependent;
+        }
+
+        void removeDependent(Node dependent) {
+            for (int i = 0; i < dependentCount; i++) {
+                if (dependents[i] == dependent) {
+                    dependents[i] = dependents[--dependentCount];
+                    dependents[dependentCount] = null;
+                    return;
+                }
+            }
+        }
+
+        void compute() {
+            failure = null;
+            for (int i = 0; i < operands.length; i++) {
+                if (operands[i].failure != null) {
+                    failure = operands[i].failure;
+                    value = Double.NaN;
+                    return;
+                }
+                arguments[slots[i]] = operands[i].value;
+            }
+            try {
+                value = expression.evaluate(arguments);
+            } catch (ArithmeticException e) {
+                failure = e;
+                value = Double.NaN;
+            }
+        }
+    }
+
+    public FormulaGraph() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    // chunkSize is the number of formulas of one level below which recomputeParallel stops splitting the work
+    public FormulaGraph(ForkJoinPool pool, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    // Adds an input, or changes its value. Formulas depending on it are only marked dirty if the value changed
+    public void setInput(String name, double value) {
+        Node node = nodes.get(name);
+        if (node == null) {
+            node = addNode(name);
+        } else if (!node.isInput()) {
+            throw new IllegalArgumentException(name + " is a formula, not an input");
+        } else if (Double.doubleToLongBits(node.value) == Double.doubleToLongBits(value)) {
+            return;
+        }
+        node.value = value;
+        markDependentsDirty(node);
+    }
+
+    // Adds a formula, or replaces the text of one. The formula can use the names of inputs and formulas already
+    // in the graph, but a formula cannot end up depending on itself
+    public void define(String name, String formula) {
+        Node node = nodes.get(name);
+        if (node == null) {
+            MathTokenizer.checkVariableName(name);
+        } else if (node.isInput()) {
+            throw new IllegalArgumentException(name + " is an input, not a formula");
+        }
+
+        List<Node> candidates = namesIn(formula);
+        String[] variableNames = new String[candidates.size()];
+        for (int i = 0; i < variableNames.length; i++) {
+            variableNames[i] = candidates.get(i).name;
+        }
+        CompiledExpression expression = parser.compile(formula, variableNames);
+        if (expression.getInstructionCount() == 0) {
+            throw new IllegalArgumentException("Formula " + name + " is empty");
+        }
+
+        // only the names the tokenizer actually read as variables are operands
+        boolean[] used = new boolean[variableNames.length];
+        for (int instruction : expression.code()) {
+            if (Opcodes.opcode(instruction) == Opcodes.LOAD_VARIABLE) {
+                used[Opcodes.operand(instruction)] = true;
+            }
+        }
+        List<Node> operands = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        for (int slot = 0; slot < used.length; slot++) {
+            if (used[slot]) {
+                operands.add(candidates.get(slot));
+                slots.add(slot);
+            }
+        }
+        if (node != null) {
+            for (Node operand : operands) {
+                if (dependsOn(operand, node)) {
+                    throw new IllegalArgumentException("Formula " + name + " would depend on itself through " + operand.name);
+                }
+            }
+        }
+
+        if (node == null) {
+            node = addNode(name);
+        } else {
+            for (Node operand : node.operands) {
+                operand.removeDependent(node);
+            }
+        }
+        node.formula = formula;
+        node.expression = expression;
+        node.operands = operands.toArray(new Node[0]);
+        node.slots = slots.stream().mapToInt(Integer::intValue).toArray();
+        node.arguments = new double[variableNames.length];
+        for (Node operand : node.operands) {
+            operand.addDependent(node);
+        }
+        updateLevel(node);
+        markDirty(node);
+        markDependentsDirty(node);
+    }
+
+    public boolean contains(String name) {
+        return nodes.containsKey(name);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    // The text of a formula, or null for an input
+    public String getFormula(String name) {
+        return node(name).formula;
+    }
+
+    // Names of the inputs and formulas the formula reads, empty for an input
+    public List<String> getOperands(String name) {
+        Node node = node(name);
+        if (node.isInput()) {
+            return List.of();
+        }
+        List<String> operands = new ArrayList<>(node.operands.length);
+        for (Node operand : node.operands) {
+            operands.add(operand.name);
+        }
+        return operands;
+    }
+
+    // Number of formulas waiting to be recomputed
+    public int getDirtyCount() {
+        return dirtyCount;
+    }
+
+    public double getValue(String name) {
+        Node node = node(name);
+        if (dirtyCount > 0) {
+            recompute();
+        }
+        if (node.failure != null) {
+            throw node.failure;
+        }
+        return node.value;
+    }
+
+    // Recomputes every dirty formula, operands first, and returns how many were recomputed
+    public int recompute() {
+        return recompute(false);
+    }
+
+    // Like recompute, but evaluates the dirty formulas of each level on the pool when there are enough of them
+    public int recomputeParallel() {
+        return recompute(true);
+    }
+
+    private int recompute(boolean parallel) {
+        int count = dirtyCount;
+        Node[] order = Arrays.copyOf(dirty, count);
+        Arrays.sort(order, (a, b) -> Integer.compare(a.level, b.level));
+        for (int start = 0; start < count; ) {
+            int end = start + 1;
+            while (end < count && order[end].level == order[start].level) {
+                end++;
+            }
+            if (parallel && end - start > chunkSize) {
+                pool.invoke(new LevelTask(order, start, end));
+            } else {
+                for (int i = start; i < end; i++) {
+                    order[i].compute();
+                }
+            }
+            start = end;
+        }
+        for (int i = 0; i < count; i++) {
+            dirty[i].dirty = false;
+            dirty[i] = null;
+        }
+        dirtyCount = 0;
+        return count;
+    }
+
+    private Node node(String name) {
+        Node node = nodes.get(name);
+        if (node == null) {
+            throw new IllegalArgumentException("Unknown name: " + name);
+        }
+        return node;
+    }
+
+    private Node addNode(String name) {
+        MathTokenizer.checkVariableName(name);
+        Node node = new Node(name);
+        nodes.put(name, node);
+        longestName = Math.max(longestName, name.length());
+        return node;
+    }
+
+    // The nodes whose name appears somewhere in the formula. Names can follow each other without an operator in
+    // between, so every substring starting with a letter is looked up
+    private List<Node> namesIn(String formula) {
+        List<Node> candidates = new ArrayList<>();
+        for (int start = 0; start < formula.length(); start++) {
+            if (!Character.isLetter(formula.charAt(start))) {
+                continue;
+            }
+            int end = start;
+            while (end < formula.length() && end - start < longestName
+                    && (Character.isLetterOrDigit(formula.charAt(end)) || formula.charAt(end) == '_')) {
+                end++;
+                Node candidate = nodes.get(formula.substring(start, end));
+                if (candidate != null && !candidates.contains(candidate)) {
+                    candidates.add(candidate);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    // Whether target can be reached from node by following operands. Only nodes above the level of target can
+    // depend on it
+    private static boolean dependsOn(Node node, Node target) {
+        Set<Node> visited = new HashSet<>();
+        List<Node> pending = new ArrayList<>();
+        pending.add(node);
+        while (!pending.isEmpty()) {
+            Node current = pending.remove(pending.size() - 1);
+            if (current == target) {
+                return true;
+            }
+            if (current.isInput() || current.level <= target.level || !visited.add(current)) {
+                continue;
+            }
+            pending.addAll(Arrays.asList(current.operands));
+        }
+        return false;
+    }
+
+    // Sets the level of a redefined formula and moves its dependents up or down to match
+    private static void updateLevel(Node node) {
+        List<Node> pending = new ArrayList<>();
+        pending.add(node);
+        while (!pending.isEmpty()) {
+            Node current = pending.remove(pending.size() - 1);
+            int level = 0;
+            for (Node operand : current.operands) {
+                level = Math.max(level, operand.level + 1);
+            }
+            if (level != current.level || current == node) {
+                current.level = level;
+                for (int i = 0; i < current.dependentCount; i++) {
+                    pending.add(current.dependents[i]);
+                }
+            }
+        }
+    }
+
+    private void markDependentsDirty(Node node) {
+        List<Node> pending = new ArrayList<>();
+        pending.add(node);
+        while (!pending.isEmpty()) {
+            Node current = pending.remove(pending.size() - 1);
+            for (int i = 0; i < current.dependentCount; i++) {
+                Node dependent = current.dependents[i];
+                // the dependents of a dirty formula are already dirty
+                if (!dependent.dirty) {
+                    markDirty(dependent);
+                    pending.add(dependent);
+                }
+            }
+        }
+    }
+
+    private void markDirty(Node node) {
+        if (node.dirty) {
+            return;
+        }
+        node.dirty = true;
+        if (dirtyCount == dirty.length) {
+            dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+        }
+        dirty[dirtyCount++] = node;
+    }
+
+    // Computes formulas of one level, which never read each other
+    @SuppressWarnings("serial")
+    private final class LevelTask extends RecursiveAction {
+        private final Node[] order;
+        private final int from;
+        private final int to;
+
+        LevelTask(Node[] order, int from, int to) {
+            this.order = order;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                for (int i = from; i < to; i++) {
+                    order[i].compute();
+                }
+                return;
+            }
+            int middle = from + (to - from) / 2;
+            invokeAll(new LevelTask(order, from, middle), new LevelTask(order, middle, to));
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package main.model;
+
+import java.util.EmptyStackException;
+
+// Computes the value of a compiled expression together with its derivative with respect to every variable, by
+// reverse-mode automatic differentiation: a forward pass runs the instructions like CompiledExpression.evaluate and
+// keeps the value each one produced, then a reverse pass walks the instructions backwards, passing the derivative
+// of the result with respect to each value on to the operands of the instruction that produced it. Both passes
+// visit each instruction once, so a full gradient costs a small constant factor of one evaluation however many
+// variables there are.
+// Which instructions produced the operands of each instruction only depends on the code, so it is worked out once
+// here. The per-evaluation scratch is kept in the instance: use one GradientEvaluator per thread.
+// Every value the result depends on passes its derivative on, even a zero one, so a zero times an infinite or NaN
+// derivative further down gives NaN, as forward-mode differentiation and finite differences would
+public final class GradientEvaluator {
+    private static final double LN_10 = Math.log(10);
+
+    private final CompiledExpression expression;
+    private final int[] code;
+    private final double[] constants;
+    // index of the instructions whose values are the left and right operands of each instruction, or -1
+    private final int[] leftOperands;
+    private final int[] rightOperands;
+    // whether the result depends on the value of each instruction; operands left over below it do not
+    private final boolean[] used;
+    private final double[] values;
+    private final double[] adjoints;
+
+    public GradientEvaluator(CompiledExpression expression) {
+        this.expression = expression;
+        code = expression.code();
+        constants = expression.constants();
+        leftOperands = new int[code.length];
+        rightOperands = new int[code.length];
+        values = new double[code.length];
+        adjoints = new double[code.length];
+
+        int[] stack = new int[expression.getMaxStackDepth()];
+        int top = -1;
+        for (int i = 0; i < code.length; i++) {
+            int arity = Opcodes.arity(Opcodes.opcode(code[i]));
+            rightOperands[i] = arity >= 1 ? stack[top] : -1;
+            leftOperands[i] = arity == 2 ? stack[top - 1] : -1;
+            top -= arity;
+            stack[++top] = i;
+        }
+
+        used = new boolean[code.length];
+        if (code.length > 0) {
+            used[code.length - 1] = true;
+        }
+        for (int i = code.length - 1; i >= 0; i--) {
+            if (used[i]) {
+                if (leftOperands[i] >= 0) {
+                    used[leftOperands[i]] = true;
+                }
+                if (rightOperands[i] >= 0) {
+                    used[rightOperands[i]] = true;
+                }
+            }
+        }
+    }
+
+    public CompiledExpression getExpression() {
+        return expression;
+    }
+
+    // Returns the value of the expression and stores its partial derivative with respect to the variable in each
+    // slot in gradient[slot]. Fails like CompiledExpression.evaluate. A derivative that does not exist at this
+    // point, such as that of √x at 0, comes out as an infinity or NaN
+    public double evaluate(double[] variables, double[] gradient) {
+        int variableCount = expression.getVariableNames().size();
+        CompiledExpression.checkVariables(variables, variableCount);
+        if (gradient.length < variableCount) {
+            throw new IllegalArgumentException("Expected room for " + variableCount + " derivatives but got " + gradient.length);
+        }
+        if (code.length == 0) {
+            throw new EmptyStackException();
+        }
+
+        forward(variables);
+
+        for (int slot = 0; slot < variableCount; slot++) {
+            gradient[slot] = 0;
+        }
+        // operands left over below the result are evaluated but do not change it
+        int result = code.length - 1;
+        for (int i = 0; i < result; i++) {
+            adjoints[i] = 0;
+        }
+        adjoints[result] = 1;
+        reverse(gradient);
+        return values[result];
+    }
+
+    private void forward(double[] variables) {
+        for (int i = 0; i < code.length; i++) {
+            int instruction = code[i];
+            double value;
+            switch (Opcodes.opcode(instruction)) {
+                case Opcodes.PUSH_CONSTANT -> value = constants[Opcodes.operand(instruction)];
+                case Opcodes.LOAD_VARIABLE -> value = variables[Opcodes.operand(instruction)];
+                case Opcodes.ADD -> value = values[leftOperands[i]] + values[rightOperands[i]];
+                case Opcodes.SUBTRACT -> value = values[leftOperands[i]] - values[rightOperands[i]];
+                case Opcodes.MULTIPLY -> value = values[leftOperands[i]] * values[rightOperands[i]];
+                case Opcodes.DIVIDE -> value = CompiledExpression.divide(values[leftOperands[i]], values[rightOperands[i]]);
+                case Opcodes.POWER -> value = Math.pow(values[leftOperands[i]], values[rightOperands[i]]);
+                case Opcodes.SQRT -> value = Math.sqrt(values[rightOperands[i]]);
+                case Opcodes.LN -> value = CompiledExpression.ln(values[rightOperands[i]]);
+                case Opcodes.LOG -> value = CompiledExpression.log(values[rightOperands[i]]);
+                default -> value = -values[rightOperands[i]];
+            }
+            values[i] = value;
+        }
+    }
+
+    private void reverse(double[] gradient) {
+        for (int i = code.length - 1; i >= 0; i--) {
+            if (!used[i]) {
+                continue;
+            }
+            double adjoint = adjoints[i];
+            int instruction = code[i];
+            int left = leftOperands[i];
+            int right = rightOperands[i];
+            switch (Opcodes.opcode(instruction)) {
+                case Opcodes.PUSH_CONSTANT -> {
+                }
+                case Opcodes.LOAD_VARIABLE -> gradient[Opcodes.operand(instruction)] += adjoint;
+                case Opcodes.ADD -> {
+                    adjoints[left] += adjoint;
+                    adjoints[right] += adjoint;
+                }
+                case Opcodes.SUBTRACT -> {
+                    adjoints[left] += adjoint;
+                    adjoints[right] -= adjoint;
+                }
+                case Opcodes.MULTIPLY -> {
+                    adjoints[left] += adjoint * values[right];
+                    adjoints[right] += adjoint * values[left];
+                }
+                case Opcodes.DIVIDE -> {
+                    adjoints[left] += adjoint / values[right];
+                    adjoints[right] -= adjoint * values[i] / values[right];
+                }
+                case Opcodes.POWER -> {
+                    double base = values[left];
+                    double exponent = values[right];
+                    adjoints[left] += adjoint * exponent * Math.pow(base, exponent - 1);
+                    // base^exponent only varies with the exponent for a positive base, and is 0 near a base of 0
+                    if (base > 0) {
+                        adjoints[right] += adjoint * values[i] * Math.log(base);
+                    } else if (base < 0 || exponent <= 0) {
+                        adjoints[right] += Double.NaN;
+                    }
+                }
+                case Opcodes.SQRT -> adjoints[right] += adjoint / (2 * values[i]);
+                case Opcodes.LN -> adjoints[right] += adjoint / values[right];
+                case Opcodes.LOG -> adjoints[right] += adjoint / (values[right] * LN_10);
+                default -> adjoints[right] -= adjoint;
+            }
+        }
+    }
+}
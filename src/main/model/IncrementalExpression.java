@@ -0,0 +1,224 @@
+package main.model;
+
+import java.util.Arrays;
+import java.util.OptionalDouble;
+
+// An expression edited at its end, one keystroke at a time, that keeps a preview of its result up to date.
+// The tokens and the partial parse of the text are kept between edits, together with a checkpoint of both at the
+// start of every token. An edit only rolls back to the last checkpoint that the changed characters cannot affect,
+// which is at most the last token plus the few characters the tokenizer looks ahead, and tokenizes and parses again
+// from there. The parse evaluates operators as soon as the shunting-yard algorithm would emit them, and keeps its
+// operand and operator stacks as immutable linked lists, so a checkpoint is just a pair of references.
+// The cost of an edit therefore depends on the length of the last token and on how many operators are still waiting
+// for their right operand, not on the length of the expression.
+// preview() has a value exactly when MathParser.parseExpression would return one for the same text, and it is the
+// same value
+public final class IncrementalExpression {
+    private final MathTokenizer tokenizer = new MathTokenizer();
+    private final int lookahead = tokenizer.lookahead();
+    private final StringBuilder text = new StringBuilder();
+    private final TokenBuffer tokens = new TokenBuffer();
+    private final MathTokenizer.OpenParentheses openParentheses = new MathTokenizer.OpenParentheses();
+
+    // Checkpoint k is the state before the token starting at positions[k]: the number of tokens and open
+    // parentheses, the parse stacks, and how far into the text the tokens before it looked. The last checkpoint is
+    // the current state
+    private int[] positions = new int[16];
+    private int[] tokenCounts = new int[16];
+    private int[] depths = new int[16];
+    private int[] extents = new int[16];
+    private Operand[] operands = new Operand[16];
+    private Operator[] operators = new Operator[16];
+    private int checkpointCount;
+
+    // Set when the text after the last checkpoint cannot be tokenized or parsed. Nothing after that point is
+    // tokenized until an edit before failureExtent, the furthest the failed attempt could have looked
+    private boolean failed;
+    private int failureExtent;
+
+    private record Operand(double value, Operand below) {
+    }
+
+    private record Operator(byte kind, Operator below) {
+    }
+
+    public IncrementalExpression() {
+        clear();
+    }
+
+    public void append(CharSequence characters) {
+        int changed = text.length();
+        text.append(characters);
+        update(changed);
+    }
+
+    public void deleteLast(int count) {
+        if (count < 0 || count > text.length()) {
+            throw new IllegalArgumentException("Cannot delete " + count + " characters from " + text.length());
+        }
+        text.setLength(text.length() - count);
+        update(text.length());
+    }
+
+    public void clear() {
+        text.setLength(0);
+        tokens.clear();
+        openParentheses.depth = 0;
+        failed = false;
+        checkpointCount = 0;
+        pushCheckpoint(0, 0, null, null);
+    }
+
+    public int length() {
+        return text.length();
+    }
+
+    public String getText() {
+        return text.toString();
+    }
+
+    // The result of the text as it is now, or empty if it is not a complete expression or evaluating it fails
+    public OptionalDouble preview() {
+        int top = checkpointCount - 1;
+        if (failed || openParentheses.depth != 0 || tokens.size() == 0) {
+            return OptionalDouble.empty();
+        }
+        // apply the operators still waiting, without changing the checkpoint
+        Operand operand = operands[top];
+        try {
+            for (Operator operator = operators[top]; operator != null; operator = operator.below()) {
+                operand = apply(MathParser.getOpcode(operator.kind()), operand);
+            }
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            return OptionalDouble.empty();
+        }
+        // nothing to evaluate, as in "()"
+        return operand == null ? OptionalDouble.empty() : OptionalDouble.of(operand.value());
+    }
+
+    // Rolls back every token that could have looked at the text from index changed onwards, and tokenizes and
+    // parses the text again from there
+    private void update(int changed) {
+        if (failed && changed < failureExtent) {
+            failed = false;
+        }
+        while (checkpointCount > 1 && extents[checkpointCount - 1] > changed) {
+            checkpointCount--;
+        }
+        restore();
+        if (!failed) {
+            scan();
+        }
+    }
+
+    private void restore() {
+        int top = checkpointCount - 1;
+        tokens.truncate(tokenCounts[top]);
+        openParentheses.depth = depths[top];
+    }
+
+    @SuppressWarnings("fallthrough")
+    private void scan() {
+        int top = checkpointCount - 1;
+        int position = positions[top];
+        int extent = extents[top];
+        Operand operand = operands[top];
+        Operator operator = operators[top];
+
+        try {
+            while (position < text.length()) {
+                int first = tokens.size();
+                position = tokenizer.tokenizeNext(text, position, tokens, openParentheses);
+                for (int i = first; i < tokens.size(); i++) {
+                    byte kind = tokens.kind(i);
+                    switch (kind) {
+                        case TokenBuffer.NUMBER:
+                            operand = new Operand(tokens.number(i), operand);
+                            break;
+                        case TokenBuffer.LEFT_PARENTHESIS:
+                        case TokenBuffer.SQRT:
+                        case TokenBuffer.LN:
+                        case TokenBuffer.LOG:
+                            operator = new Operator(kind, operator);
+                            break;
+                        case TokenBuffer.RIGHT_PARENTHESIS:
+                            while (operator.kind() != TokenBuffer.LEFT_PARENTHESIS) {
+                                operand = apply(MathParser.getOpcode(operator.kind()), operand);
+                                operator = operator.below();
+                            }
+                            operator = operator.below();
+                            break;
+                        case TokenBuffer.NEGATE:
+                            // the same multiplication by (0-1) that MathParser compiles
+                            operand = new Operand(0, operand);
+                            operand = new Operand(1, operand);
+                            operand = apply(Opcodes.SUBTRACT, operand);
+                            // fall through
+                        default:
+                            while (operator != null && MathParser.getPrecedence(operator.kind()) >= MathParser.getPrecedence(kind)) {
+                                operand = apply(MathParser.getOpcode(operator.kind()), operand);
+                                operator = operator.below();
+                            }
+                            operator = new Operator(kind, operator);
+                            break;
+                    }
+                }
+                extent = Math.max(extent, position + lookahead);
+                pushCheckpoint(position, extent, operand, operator);
+            }
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            failed = true;
+            failureExtent = text.length() + lookahead;
+            restore();
+        }
+    }
+
+    private void pushCheckpoint(int position, int extent, Operand operand, Operator operator) {
+        if (checkpointCount == positions.length) {
+            int capacity = checkpointCount * 2;
+            positions = Arrays.copyOf(positions, capacity);
+            tokenCounts = Arrays.copyOf(tokenCounts, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+            extents = Arrays.copyOf(extents, capacity);
+            operands = Arrays.copyOf(operands, capacity);
+            operators = Arrays.copyOf(operators, capacity);
+        }
+        positions[checkpointCount] = position;
+        tokenCounts[checkpointCount] = tokens.size();
+        depths[checkpointCount] = openParentheses.depth;
+        extents[checkpointCount] = extent;
+        operands[checkpointCount] = operand;
+        operators[checkpointCount] = operator;
+        checkpointCount++;
+    }
+
+    // Pops the operands of the instruction and pushes its result, failing where CodeBuilder and CompiledExpression
+    // would
+    private static Operand apply(int opcode, Operand operand) {
+        if (operand == null) {
+            throw new IllegalArgumentException("No operand");
+        }
+        if (Opcodes.arity(opcode) == 1) {
+            double value = operand.value();
+            double result = switch (opcode) {
+                case Opcodes.SQRT -> Math.sqrt(value);
+                case Opcodes.LN -> CompiledExpression.ln(value);
+                case Opcodes.LOG -> CompiledExpression.log(value);
+                default -> -value;
+            };
+            return new Operand(result, operand.below());
+        }
+        Operand left = operand.below();
+        if (left == null) {
+            throw new IllegalArgumentException("Not enough operands for operator");
+        }
+        double result = switch (opcode) {
+            case Opcodes.ADD -> left.value() + operand.value();
+            case Opcodes.SUBTRACT -> left.value() - operand.value();
+            case Opcodes.MULTIPLY -> left.value() * operand.value();
+            case Opcodes.DIVIDE -> CompiledExpression.divide(left.value(), operand.value());
+            default -> Math.pow(left.value(), operand.value());
+        };
+        return new Operand(result, left.below());
+    }
+}
@@ -1,28 +1,129 @@
 package main.model;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EmptyStackException;
 import java.util.List;
-import java.util.Stack;
+import java.util.Map;
 
 public class MathParser {
+    private final ExpressionCache cache;
+    private final boolean optimize;
+    private final int tokenBudget;
+    private final EngineMetrics metrics;
 
-    private void checkParenthesesBalance(String expression) {
-        int balance = 0;
-        for (char c : expression.toCharArray()) {
-            if (c == '(') {
-                balance++;
-            } else if (c == ')') {
-                balance--;
-                if (balance < 0) {
-                    // Found a closing parenthesis without a matching opening parenthesis
-                    throw new IllegalArgumentException("Mismatched parentheses in expression: " + expression);
-                }
-            }
+    public MathParser() {
+        this(null);
+    }
+
+    // Creates a parser that looks compiled expressions up in the given cache before compiling them, so each
+    // distinct formula is only tokenized and parsed once. The cache may be shared between parsers
+    public MathParser(ExpressionCache cache) {
+        this(cache, true);
+    }
+
+    // optimize controls whether constant sub-expressions are folded and negations and identities simplified at
+    // compile time. It never changes results, so turning it off is only useful to compare against the unoptimized
+    // program
+    public MathParser(ExpressionCache cache, boolean optimize) {
+        this(cache, optimize, Integer.MAX_VALUE);
+    }
+
+    // tokenBudget caps the number of tokens in an expression, counting the multiplications implied by 2π or 3(4).
+    // Longer expressions throw IllegalArgumentException as soon as the limit is reached. Evaluation takes at most
+    // a few steps per token, so this also bounds the time spent on any input. Expressions already in the cache are
+    // not checked again, so parsers sharing a cache should use the same budget
+    public MathParser(ExpressionCache cache, boolean optimize, int tokenBudget) {
+        this(cache, optimize, tokenBudget, null);
+    }
+
+    // Counts every parseExpression call, its latency and how it failed in metrics, which may be shared between
+    // parsers. Without metrics nothing is counted
+    public MathParser(ExpressionCache cache, boolean optimize, int tokenBudget, EngineMetrics metrics) {
+        if (tokenBudget < 1) {
+            throw new IllegalArgumentException("Token budget must be positive: " + tokenBudget);
+        }
+        this.cache = cache;
+        this.optimize = optimize;
+        this.tokenBudget = tokenBudget;
+        this.metrics = metrics;
+    }
+
+    public CompiledExpression compile(String expression, String... variableNames) {
+        if (cache == null) {
+            return compileUncached(expression, variableNames);
+        }
+        return cache.get(cacheKey(expression, variableNames), ignored -> compileUncached(expression, variableNames));
+    }
+
+    // Writes expressions this parser compiled, keyed by cacheKey, to a CompiledExpressionFile together with the
+    // settings they were compiled with
+    public void save(Path file, Map<String, CompiledExpression> expressions) throws IOException {
+        CompiledExpressionFile.write(file, expressions, optimize, tokenBudget);
+    }
+
+    // Fills the cache with expressions compiled earlier and saved to a CompiledExpressionFile, so compiling any of
+    // them again is a cache hit. A file saved by a parser that optimizes differently or allows more tokens is
+    // rejected with an IOException, as this parser would not have compiled the same programs
+    public void preload(Path file) throws IOException {
+        if (cache == null) {
+            throw new IllegalStateException("Parser has no cache to preload");
+        }
+        for (Map.Entry<String, CompiledExpression> entry : CompiledExpressionFile.read(file, optimize, tokenBudget).entrySet()) {
+            cache.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+    }
+
+    // The key compile caches an expression under. The variable names change the compiled program, so they are
+    // part of the key
+    public static String cacheKey(String expression, String... variableNames) {
+        return variableNames.length == 0 ? expression : expression + '\0' + String.join("\0", variableNames);
+    }
+
+    // Compiles several expressions over the same variables into one group that computes their shared
+    // sub-expressions once per evaluation
+    public ExpressionGroup compileGroup(List<String> expressions, String... variableNames) {
+        List<CompiledExpression> compiled = new ArrayList<>(expressions.size());
+        for (String expression : expressions) {
+            compiled.add(compile(expression, variableNames));
+        }
+        return ExpressionGroup.of(compiled, variableNames);
+    }
+
+    private CompiledExpression compileUncached(String expression, String[] variableNames) {
+        ExpressionEvents.Tokenize tokenizeEvent = new ExpressionEvents.Tokenize();
+        tokenizeEvent.begin();
+        TokenBuffer tokens = new TokenBuffer(expression.length(), tokenBudget);
+        new MathTokenizer(variableNames).tokenize(expression, tokens);
+        tokenizeEvent.end();
+        if (tokenizeEvent.shouldCommit()) {
+            tokenizeEvent.expressionLength = expression.length();
+            tokenizeEvent.tokenCount = tokens.size();
+            tokenizeEvent.commit();
         }
 
-        if (balance != 0) {
-            // Opening parentheses not matched by closing parentheses
-            throw new IllegalArgumentException("Mismatched parentheses in expression: " + expression);
+        ExpressionEvents.Parse parseEvent = new ExpressionEvents.Parse();
+        parseEvent.begin();
+        CompiledExpression compiled = toPostfix(tokens, variableNames);
+        if (optimize) {
+            compiled = ExpressionOptimizer.optimize(compiled);
+        }
+        parseEvent.end();
+        if (parseEvent.shouldCommit()) {
+            parseEvent.tokenCount = tokens.size();
+            parseEvent.instructionCount = compiled.getInstructionCount();
+            parseEvent.commit();
         }
+        return compiled;
+    }
+
+    // Compiles an expression for exact decimal results, see PreciseExpression. Numbers in the text keep the decimal
+    // value they were written with, so the program is neither optimized nor cached
+    public PreciseExpression compilePrecise(String expression, String... variableNames) {
+        TokenBuffer tokens = new TokenBuffer(expression.length(), tokenBudget);
+        new MathTokenizer(variableNames).tokenize(expression, tokens);
+        return PreciseExpression.of(expression, tokens, toPostfix(tokens, variableNames), metrics);
     }
 
     // if last item in operator stack has >= precedence than first item in input, then last item in operator
@@ -32,122 +133,143 @@ public class MathParser {
     // if an open bracket is first in the input it is pushed to operator stack, otherwise if a closing
     // bracket is first in the input then it will continually push each item from the operatorStack to the output
     // until it reaches the closing bracket in the operator stack, which is then popped
-    public double parseExpression(String expression) {
-        MathTokenizer tokenizedExpression = new MathTokenizer();
-        List<Token> tokens = tokenizedExpression.tokenize(expression);
-        Stack<Token> operatorStack = new Stack<>();
-        Stack<Double> operandStack = new Stack<>();
 
-        checkParenthesesBalance(expression);
+    // Constants are numbered in the order they are pushed: one per NUMBER token, in the order of the tokens, with the
+    // 0 and 1 a negation multiplies by pushed where its token is
+    @SuppressWarnings("fallthrough")
+    static CompiledExpression toPostfix(TokenBuffer tokens, String[] variableNames) {
+        CodeBuilder output = new CodeBuilder(tokens.size());
+        // every token pushes at most one entry, so the stack never needs to grow
+        byte[] operatorStack = new byte[tokens.size()];
+        int operatorCount = 0;
 
-        for (Token token : tokens) {
-            switch (token.getType()) {
-                case NUMBER:
-                    operandStack.push(Double.parseDouble(token.getValue()));
+        for (int i = 0; i < tokens.size(); i++) {
+            byte kind = tokens.kind(i);
+            switch (kind) {
+                case TokenBuffer.NUMBER:
+                    output.pushConstant(tokens.number(i));
                     break;
-                case OPERATOR:
-                    while (!operatorStack.isEmpty() && getPrecedence(operatorStack.peek()) >= getPrecedence(token)) {
-                        processOperator(operatorStack.pop(), operandStack);
-                    }
-                    operatorStack.push(token);
+                case TokenBuffer.VARIABLE:
+                    output.loadVariable(tokens.slot(i));
+                    break;
+                case TokenBuffer.LEFT_PARENTHESIS:
+                case TokenBuffer.SQRT:
+                case TokenBuffer.LN:
+                case TokenBuffer.LOG:
+                    operatorStack[operatorCount++] = kind;
                     break;
-                case PARENTHESIS:
-                    if (token.getValue().equals("(")) {
-                        operatorStack.push(token);
-                    } else {
-                        while (!operatorStack.isEmpty() && !operatorStack.peek().getValue().equals("(")) {
-                            processOperator(operatorStack.pop(), operandStack);
-                        }
-                        operatorStack.pop(); // Pop the '(' from the stack
+                case TokenBuffer.RIGHT_PARENTHESIS:
+                    // the tokenizer already checked that every ')' has a matching '(' on the stack
+                    while (operatorStack[operatorCount - 1] != TokenBuffer.LEFT_PARENTHESIS) {
+                        output.applyOperator(getOpcode(operatorStack[--operatorCount]));
                     }
+                    operatorCount--; // Pop the '(' from the stack
                     break;
-                case FUNCTION:
-                    if (token.getValue().equals("√") || token.getValue().equals("ln") || token.getValue().equals("log")) {
-                        operatorStack.push(token);
+                case TokenBuffer.NEGATE:
+                    // Unary negation multiplies the operand by (0-1), binding tighter than × and ÷ but looser than ^
+                    output.pushConstant(0);
+                    output.pushConstant(1);
+                    output.applyOperator(Opcodes.SUBTRACT);
+                    // fall through to push the multiplication like any other operator
+                default:
+                    while (operatorCount > 0 && getPrecedence(operatorStack[operatorCount - 1]) >= getPrecedence(kind)) {
+                        output.applyOperator(getOpcode(operatorStack[--operatorCount]));
                     }
+                    operatorStack[operatorCount++] = kind;
                     break;
             }
         }
 
-        while (!operatorStack.isEmpty()) {
-            processOperator(operatorStack.pop(), operandStack);
+        while (operatorCount > 0) {
+            output.applyOperator(getOpcode(operatorStack[--operatorCount]));
         }
+        return output.build(variableNames);
+    }
 
-        return operandStack.pop();
+    public double parseExpression(String expression) {
+        if (metrics == null) {
+            return evaluate(expression, compile(expression));
+        }
+        metrics.recordEvaluation();
+        boolean timed = metrics.sampleLatency();
+        long start = timed ? System.nanoTime() : 0;
+        try {
+            return evaluate(expression, compile(expression));
+        } catch (IllegalArgumentException e) {
+            metrics.recordSyntaxError();
+            throw e;
+        } catch (ArithmeticException e) {
+            metrics.recordArithmeticError();
+            throw e;
+        } catch (EmptyStackException e) {
+            metrics.recordEmptyExpression();
+            throw e;
+        } finally {
+            if (timed) {
+                metrics.recordLatency(System.nanoTime() - start);
+            }
+        }
     }
 
-    private void processOperator(Token operator, Stack<Double> operandStack) {
-        if (operandStack.isEmpty()) {
-            throw new IllegalArgumentException("No operand");
+    private static double evaluate(String expression, CompiledExpression compiled) {
+        ExpressionEvents.Evaluate event = new ExpressionEvents.Evaluate();
+        event.begin();
+        double result = compiled.evaluate();
+        event.end();
+        if (event.shouldCommit()) {
+            event.expressionLength = expression.length();
+            event.instructionCount = compiled.getInstructionCount();
+            event.commit();
         }
+        return result;
+    }
 
-        if (operator.getValue().equals("√")) {
-            double operand = operandStack.pop();
-            operandStack.push(Math.sqrt(operand));
-        } else if (operator.getValue().equals("ln")) {
-            double operand = operandStack.pop();
-            if (operand <= 0) {
-                throw new ArithmeticException("Argument of ln must be positive");
-            }
-            operandStack.push(Math.log(operand));
-        } else if (operator.getValue().equals("log")) {
-            double operand = operandStack.pop();
-            if (operand <= 0) {
-                throw new ArithmeticException("Argument of log must be positive");
-            }
-            operandStack.push(Math.log10(operand));
-        } else {
-            if (operandStack.size() < 2) {
-                throw new IllegalArgumentException("Not enough operands for operator");
-            }
-            double rightOperand = operandStack.pop();
-            double leftOperand = operandStack.pop();
-            switch (operator.getValue()) {
-                case "+":
-                    operandStack.push(leftOperand + rightOperand);
-                    break;
-                case "-":
-                    operandStack.push(leftOperand - rightOperand);
-                    break;
-                case "×":
-                case "*":
-                    operandStack.push(leftOperand * rightOperand);
-                    break;
-                case "÷":
-                    if (rightOperand == 0) {
-                        throw new ArithmeticException("Division by zero");
-                    }
-                    operandStack.push(leftOperand / rightOperand);
-                    break;
-                case "^":
-                operandStack.push(Math.pow(leftOperand, rightOperand));
-                break;
-            }
+    // gets the instruction that applies the current operator
+    static int getOpcode(byte kind) {
+        switch (kind) {
+            case TokenBuffer.PLUS:
+                return Opcodes.ADD;
+            case TokenBuffer.MINUS:
+                return Opcodes.SUBTRACT;
+            case TokenBuffer.TIMES:
+            case TokenBuffer.NEGATE:
+                return Opcodes.MULTIPLY;
+            case TokenBuffer.DIVIDE:
+                return Opcodes.DIVIDE;
+            case TokenBuffer.POWER:
+                return Opcodes.POWER;
+            case TokenBuffer.SQRT:
+                return Opcodes.SQRT;
+            case TokenBuffer.LN:
+                return Opcodes.LN;
+            case TokenBuffer.LOG:
+                return Opcodes.LOG;
+            default:
+                throw new IllegalArgumentException("Unknown operator: " + kind);
         }
     }
 
     // gets the precedence of current operator
-    private int getPrecedence(Token token) {
-        if (token.getType() == TokenType.PARENTHESIS) return 0;
-
-        switch (token.getValue()) {
-            case "+":
-            case "-":
+    static int getPrecedence(byte kind) {
+        switch (kind) {
+            case TokenBuffer.LEFT_PARENTHESIS:
+                return 0;
+            case TokenBuffer.PLUS:
+            case TokenBuffer.MINUS:
                 return 1;
-            case "×":
-            case "÷":
+            case TokenBuffer.TIMES:
+            case TokenBuffer.DIVIDE:
                 return 2;
-            case "^":
+            case TokenBuffer.POWER:
                 return 4;
-            case "*":
+            case TokenBuffer.NEGATE:
                 return 3;
-            case "√":
-            case "ln":
-            case "log":
+            case TokenBuffer.SQRT:
+            case TokenBuffer.LN:
+            case TokenBuffer.LOG:
                 return 4;
             default:
-                throw new IllegalArgumentException("Unknown operator: " + token.getValue());
+                throw new IllegalArgumentException("Unknown operator: " + kind);
         }
     }
 }
-
@@ -1,113 +1,333 @@
 package main.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 
 public class MathTokenizer {
+    private static final List<String> RESERVED_NAMES = List.of("e", "π", "ln", "log");
 
-    // Tokenize the expression
+    // powers of ten that are exactly representable as doubles, for parsing short numbers without rounding errors
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // variable names ordered longest first, so the longest declared name is matched at any position, and the
+    // slot of each of them
+    private final String[] variableNames;
+    private final int[] variableSlots;
+
+    // Creates a tokenizer that accepts the given names as variables in addition to numbers, constants and functions
+    public MathTokenizer(String... variableNames) {
+        checkVariableNames(variableNames);
+        Integer[] order = new Integer[variableNames.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt((Integer slot) -> variableNames[slot].length()).reversed());
+        this.variableNames = new String[order.length];
+        this.variableSlots = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            this.variableNames[i] = variableNames[order[i]];
+            this.variableSlots[i] = order[i];
+        }
+    }
+
+    static void checkVariableNames(String[] names) {
+        for (int i = 0; i < names.length; i++) {
+            checkVariableName(names[i]);
+            for (int j = 0; j < i; j++) {
+                if (names[j].equals(names[i])) {
+                    throw new IllegalArgumentException("Duplicate variable name: " + names[i]);
+                }
+            }
+        }
+    }
+
+    static void checkVariableName(String name) {
+        if (name == null || name.isEmpty() || !Character.isLetter(name.charAt(0)) || RESERVED_NAMES.contains(name)) {
+            throw new IllegalArgumentException("Invalid variable name: " + name);
+        }
+        for (int i = 1; i < name.length(); i++) {
+            if (!Character.isLetterOrDigit(name.charAt(i)) && name.charAt(i) != '_') {
+                throw new IllegalArgumentException("Invalid variable name: " + name);
+            }
+        }
+    }
+
+    // Returns the index in variableNames of the longest variable name starting at index, or -1 if there is none
+    private int variableAt(CharSequence expression, int index) {
+        for (int i = 0; i < variableNames.length; i++) {
+            if (startsWith(expression, variableNames[i], index)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsVariable(CharSequence expression, int index) {
+        return variableNames.length > 0 && variableAt(expression, index) >= 0;
+    }
+
+    // Number of characters past the end of a token that tokenizing it may look at to decide what follows it
+    int lookahead() {
+        return variableNames.length == 0 ? 3 : Math.max(3, variableNames[0].length());
+    }
+
+    // Returns the length of the constant or function name starting at index, or 0 if there is none
+    private static int reservedLengthAt(CharSequence expression, int index) {
+        if (startsWith(expression, "log", index)) return 3;
+        if (startsWith(expression, "ln", index)) return 2;
+        if (isChar(expression, index, 'e') || isChar(expression, index, 'π')) return 1;
+        return 0;
+    }
+
+    private static boolean startsWith(CharSequence expression, String prefix, int index) {
+        if (index + prefix.length() > expression.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (expression.charAt(index + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(CharSequence expression, int index) {
+        return index < expression.length() && Character.isDigit(expression.charAt(index));
+    }
+
+    private static boolean isChar(CharSequence expression, int index, char c) {
+        return index < expression.length() && expression.charAt(index) == c;
+    }
+
+    private static boolean startsFunction(CharSequence expression, int index) {
+        return isChar(expression, index, '√') || startsWith(expression, "ln", index) || startsWith(expression, "lo", index);
+    }
+
+    // Tokenize the expression. A unary en dash is a single "–" operator token
     public List<Token> tokenize(String expression) {
-        List<Token> tokens = new ArrayList<>();
-        char[] chars = expression.toCharArray();
-
-        for (int i = 0; i < chars.length; i++) {
-            char c = chars[i];
-            if (Character.isWhitespace(c)) continue;
-
-            if (Character.isDigit(c) || c == '.') {
-                StringBuilder number = new StringBuilder();
-                boolean decimalPointEncountered = false;
-
-                while (i < chars.length && (Character.isDigit(chars[i]) || chars[i] == '.')) {
-                    if (chars[i] == '.') {
-                        if (decimalPointEncountered) {
-                            // More than one decimal point in the number
-                            throw new IllegalArgumentException("Invalid number format: " + expression);
-                        }
-                        decimalPointEncountered = true;
-                    }
-                    number.append(chars[i++]);
+        TokenBuffer buffer = new TokenBuffer(expression.length());
+        tokenize(expression, buffer);
+
+        List<Token> tokens = new ArrayList<>(buffer.size());
+        for (int i = 0; i < buffer.size(); i++) {
+            int start = buffer.start(i);
+            switch (buffer.kind(i)) {
+                case TokenBuffer.NUMBER -> {
+                    char c = expression.charAt(start);
+                    String value = c == 'e' ? String.valueOf(Math.E)
+                            : c == 'π' ? String.valueOf(Math.PI)
+                            : expression.substring(start, start + buffer.length(i));
+                    tokens.add(new Token(value, TokenType.NUMBER));
                 }
+                case TokenBuffer.VARIABLE -> tokens.add(new Token(expression.substring(start, start + buffer.length(i)), TokenType.VARIABLE));
+                case TokenBuffer.PLUS -> tokens.add(new Token("+", TokenType.OPERATOR));
+                case TokenBuffer.MINUS -> tokens.add(new Token("-", TokenType.OPERATOR));
+                case TokenBuffer.TIMES -> tokens.add(new Token("×", TokenType.OPERATOR));
+                case TokenBuffer.DIVIDE -> tokens.add(new Token("÷", TokenType.OPERATOR));
+                case TokenBuffer.POWER -> tokens.add(new Token("^", TokenType.OPERATOR));
+                case TokenBuffer.NEGATE -> tokens.add(new Token("–", TokenType.OPERATOR));
+                case TokenBuffer.LEFT_PARENTHESIS -> tokens.add(new Token("(", TokenType.PARENTHESIS));
+                case TokenBuffer.RIGHT_PARENTHESIS -> tokens.add(new Token(")", TokenType.PARENTHESIS));
+                case TokenBuffer.SQRT -> tokens.add(new Token("√", TokenType.FUNCTION));
+                case TokenBuffer.LN -> tokens.add(new Token("ln", TokenType.FUNCTION));
+                case TokenBuffer.LOG -> tokens.add(new Token("log", TokenType.FUNCTION));
+            }
+        }
+        return tokens;
+    }
+
+    // Tokenize the expression into the buffer in a single pass, without creating an object per token. Any tokens
+    // already in the buffer are discarded. Parentheses are checked for balance in the same pass, and a mismatch is
+    // reported with the index of the offending parenthesis
+    public void tokenize(String expression, TokenBuffer tokens) {
+        tokens.clear();
+        OpenParentheses openParentheses = new OpenParentheses();
+        int i = 0;
+        while (i < expression.length()) {
+            i = tokenizeNext(expression, i, tokens, openParentheses);
+        }
 
-                i--; // Adjust for the next character
-                tokens.add(new Token(number.toString(), TokenType.NUMBER));
+        if (openParentheses.depth != 0) {
+            // Opening parenthesis not matched by a closing parenthesis, report the innermost one
+            throw new IllegalArgumentException("Mismatched parentheses at index " + openParentheses.innermost()
+                    + " in expression: " + expression);
+        }
+    }
+
+    // Indexes of the parentheses that are still open, innermost last
+    static final class OpenParentheses {
+        private int[] indexes = new int[8];
+        int depth;
+
+        void push(int index) {
+            if (depth == indexes.length) {
+                indexes = Arrays.copyOf(indexes, depth * 2);
+            }
+            indexes[depth++] = index;
+        }
 
-                // Implicit multiplication after a number
-                if (i + 1 < chars.length) {
-                    char nextChar = chars[i + 1];
-                    if (nextChar == '(' || nextChar == 'e' || nextChar == 'π' || nextChar == '√' || (nextChar == 'l' && (chars[i + 2] == 'n' || chars[i + 2] == 'o'))) {
-                        tokens.add(new Token("×", TokenType.OPERATOR));
+        int innermost() {
+            return indexes[depth - 1];
+        }
+    }
+
+    // Tokenizes the number, name, operator or parenthesis starting at index i, or skips the whitespace there, and
+    // returns the index just after it. What is added depends only on the tokens already in the buffer and on the
+    // characters before index + its length + lookahead(), which lets IncrementalExpression resume from any token
+    int tokenizeNext(CharSequence expression, int i, TokenBuffer tokens, OpenParentheses openParentheses) {
+        int length = expression.length();
+        char c = expression.charAt(i);
+        if (Character.isWhitespace(c)) return i + 1;
+
+        if (Character.isDigit(c) || c == '.') {
+            int start = i;
+            boolean decimalPointEncountered = false;
+
+            while (i < length && (Character.isDigit(expression.charAt(i)) || expression.charAt(i) == '.')) {
+                if (expression.charAt(i) == '.') {
+                    if (decimalPointEncountered) {
+                        // More than one decimal point in the number
+                        throw new IllegalArgumentException("Invalid number format: " + expression);
                     }
+                    decimalPointEncountered = true;
                 }
+                i++;
+            }
 
-            } else {
-                boolean condition = i + 1 < chars.length && (Character.isDigit(chars[i + 1])
-                        || chars[i + 1] == '(' || chars[i + 1] == 'e' || chars[i + 1] == 'π'
-                        || chars[i + 1] == '√' || (chars[i + 1] == 'l' && (chars[i + 2] == 'n'
-                        || chars[i + 2] == 'o')));
-
-                if ("–".indexOf(c) != -1) {
-                    boolean correctUnaryUsage = i == 0 || (chars[i - 1] == '(' || "+-×÷^".indexOf(chars[i - 1]) != -1) && condition;
-
-                    if (!correctUnaryUsage) {
-                        throw new IllegalArgumentException("Invalid use of en dash: " + expression);
-                    } else {
-                        // Correct usage for unary negation
-                        tokens.add(new Token("(", TokenType.PARENTHESIS));
-                        tokens.add(new Token("0", TokenType.NUMBER));
-                        tokens.add(new Token("-", TokenType.OPERATOR));
-                        tokens.add(new Token("1", TokenType.NUMBER));
-                        tokens.add(new Token(")", TokenType.PARENTHESIS));
-                        tokens.add(new Token("*", TokenType.OPERATOR));
-                    }
-                } else if (c == ')') {
-                    tokens.add(new Token(")", TokenType.PARENTHESIS));
-                    // If the next character is a period without a digit in between, throw a syntax error
-                    if (i + 1 < chars.length && chars[i + 1] == '.') {
-                        throw new IllegalArgumentException("Syntax Error: Parenthesis followed by a period without a digit in between");
-                    }
-                    // If the next character is a digit, a constant, or a parenthesis, add a multiplication operator
-                    if (i + 1 < chars.length && (Character.isDigit(chars[i + 1]) || chars[i + 1] == 'e' || chars[i + 1] == 'π' || chars[i + 1] == '(' || chars[i+1] == '√')) {
-                        tokens.add(new Token("×", TokenType.OPERATOR));
-                    }
-                } else if (c == 'e') {
-                    // If the last token is also a constant, throw a syntax error
-                    if (!tokens.isEmpty() && tokens.getLast().getType() == TokenType.NUMBER) {
-                        throw new IllegalArgumentException("Syntax Error: Two constants without an operator in between");
-                    }
-                    tokens.add(new Token(String.valueOf(Math.E), TokenType.NUMBER));
-                    // If the next character is a digit or a parenthesis, add a multiplication operator
-                    if (i + 1 < chars.length && (Character.isDigit(chars[i + 1]) || chars[i + 1] == '(')) {
-                        tokens.add(new Token("×", TokenType.OPERATOR));
-                    }
-                } else if (c == 'π') {
-                    // If the last token is also a constant, throw a syntax error
-                    if (!tokens.isEmpty() && tokens.getLast().getType() == TokenType.NUMBER) {
-                        throw new IllegalArgumentException("Syntax Error: Two constants without an operator in between");
-                    }
-                    tokens.add(new Token(String.valueOf(Math.PI), TokenType.NUMBER));
-                    // If the next character is a digit or a parenthesis, add a multiplication operator
-                    if (i + 1 < chars.length && (Character.isDigit(chars[i + 1]) || chars[i + 1] == '(')) {
-                        tokens.add(new Token("×", TokenType.OPERATOR));
-                    }
-                } else if (c == '√') {
-                    tokens.add(new Token("√", TokenType.FUNCTION));
-                } else if (expression.startsWith("ln", i)) {
-                    tokens.add(new Token("ln", TokenType.FUNCTION));
-                    i += 1; // Skip past "ln"
-                } else if (expression.startsWith("log", i)) {
-                    tokens.add(new Token("log", TokenType.FUNCTION));
-                    i += 2; // Skip past "log"
-                } else if ("+-×÷^".indexOf(c) != -1) {
-                    tokens.add(new Token(String.valueOf(c), TokenType.OPERATOR));
-                } else if (c == '(') {
-                    tokens.add(new Token(String.valueOf(c), TokenType.PARENTHESIS));
-                } else {
-                    throw new IllegalArgumentException("Invalid character: " + c);
+            tokens.add(TokenBuffer.NUMBER, start, i - start, parseNumber(expression, start, i));
+
+            // Implicit multiplication after a number
+            if (isChar(expression, i, '(') || isChar(expression, i, 'e') || isChar(expression, i, 'π')
+                    || startsFunction(expression, i) || startsVariable(expression, i)) {
+                tokens.add(TokenBuffer.TIMES, i, 0, 0);
+            }
+            return i;
+        }
+
+        if (c == '–') {
+            int next = i + 1;
+            boolean condition = next < length && (isDigit(expression, next) || isChar(expression, next, '(')
+                    || isChar(expression, next, 'e') || isChar(expression, next, 'π')
+                    || startsFunction(expression, next) || startsVariable(expression, next));
+            char previous = i == 0 ? 0 : expression.charAt(i - 1);
+            boolean correctUnaryUsage = i == 0 || (previous == '(' || "+-×÷^".indexOf(previous) != -1) && condition;
+
+            if (!correctUnaryUsage) {
+                throw new IllegalArgumentException("Invalid use of en dash: " + expression);
+            }
+            tokens.add(TokenBuffer.NEGATE, i, 1, 0);
+            return next;
+        }
+
+        int variable = variableNames.length == 0 ? -1 : variableAt(expression, i);
+
+        if (variable >= 0 && variableNames[variable].length() > reservedLengthAt(expression, i)) {
+            tokens.add(TokenBuffer.VARIABLE, i, variableNames[variable].length(), variableSlots[variable]);
+            // A variable followed by a number, constant, function, variable or parenthesis is multiplied
+            int next = i + variableNames[variable].length();
+            if (isDigit(expression, next) || isChar(expression, next, '(') || isChar(expression, next, '√')
+                    || reservedLengthAt(expression, next) > 0 || startsVariable(expression, next)) {
+                tokens.add(TokenBuffer.TIMES, next, 0, 0);
+            }
+            return next;
+        } else if (c == ')') {
+            if (openParentheses.depth == 0) {
+                // Found a closing parenthesis without a matching opening parenthesis
+                throw new IllegalArgumentException("Mismatched parentheses at index " + i + " in expression: " + expression);
+            }
+            openParentheses.depth--;
+            tokens.add(TokenBuffer.RIGHT_PARENTHESIS, i, 1, 0);
+            int next = i + 1;
+            // If the next character is a period without a digit in between, throw a syntax error
+            if (isChar(expression, next, '.')) {
+                throw new IllegalArgumentException("Syntax Error: Parenthesis followed by a period without a digit in between");
+            }
+            // If the next character is a digit, a constant, or a parenthesis, add a multiplication operator
+            if (isDigit(expression, next) || isChar(expression, next, 'e') || isChar(expression, next, 'π')
+                    || isChar(expression, next, '(') || isChar(expression, next, '√') || startsVariable(expression, next)) {
+                tokens.add(TokenBuffer.TIMES, next, 0, 0);
+            }
+            return next;
+        } else if (c == 'e' || c == 'π') {
+            // If the last token is also a constant, throw a syntax error
+            if (tokens.lastKind() == TokenBuffer.NUMBER) {
+                throw new IllegalArgumentException("Syntax Error: Two constants without an operator in between");
+            }
+            tokens.add(TokenBuffer.NUMBER, i, 1, c == 'e' ? Math.E : Math.PI);
+            // If the next character is a digit, a parenthesis or a variable, add a multiplication operator
+            int next = i + 1;
+            if (isDigit(expression, next) || isChar(expression, next, '(') || startsVariable(expression, next)) {
+                tokens.add(TokenBuffer.TIMES, next, 0, 0);
+            }
+            return next;
+        } else if (c == '√') {
+            tokens.add(TokenBuffer.SQRT, i, 1, 0);
+        } else if (startsWith(expression, "ln", i)) {
+            tokens.add(TokenBuffer.LN, i, 2, 0);
+            return i + 2; // Skip past "ln"
+        } else if (startsWith(expression, "log", i)) {
+            tokens.add(TokenBuffer.LOG, i, 3, 0);
+            return i + 3; // Skip past "log"
+        } else if (c == '+') {
+            tokens.add(TokenBuffer.PLUS, i, 1, 0);
+        } else if (c == '-') {
+            tokens.add(TokenBuffer.MINUS, i, 1, 0);
+        } else if (c == '×') {
+            tokens.add(TokenBuffer.TIMES, i, 1, 0);
+        } else if (c == '÷') {
+            tokens.add(TokenBuffer.DIVIDE, i, 1, 0);
+        } else if (c == '^') {
+            tokens.add(TokenBuffer.POWER, i, 1, 0);
+        } else if (c == '(') {
+            openParentheses.push(i);
+            tokens.add(TokenBuffer.LEFT_PARENTHESIS, i, 1, 0);
+        } else {
+            throw new IllegalArgumentException("Invalid character: " + c);
+        }
+        return i + 1;
+    }
+
+    // Parses the digits and decimal point between start and end. Numbers with up to 15 digits are exactly
+    // representable as a long divided by a power of ten, which gives the same correctly rounded result as
+    // Double.parseDouble without creating a substring; anything longer falls back to it
+    private static double parseNumber(CharSequence expression, int start, int end) {
+        long digits = 0;
+        int digitCount = 0;
+        int fractionDigits = -1;
+
+        for (int i = start; i < end; i++) {
+            char c = expression.charAt(i);
+            if (c == '.') {
+                fractionDigits = 0;
+            } else if (c >= '0' && c <= '9' && digitCount < 15) {
+                digits = digits * 10 + (c - '0');
+                if (digits != 0) {
+                    digitCount++;
+                }
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
                 }
+            } else {
+                // non ASCII digits or too many significant digits
+                return Double.parseDouble(expression.subSequence(start, end).toString());
             }
         }
 
-        return tokens;
+        if (end - start == 1 && fractionDigits == 0) {
+            // a lone decimal point
+            return Double.parseDouble(expression.subSequence(start, end).toString());
+        }
+        if (fractionDigits <= 0) {
+            return digits;
+        }
+        if (fractionDigits < POWERS_OF_TEN.length) {
+            return digits / POWERS_OF_TEN[fractionDigits];
+        }
+        return Double.parseDouble(expression.subSequence(start, end).toString());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,47 @@
+package main.model;
+
+// Instruction set of a compiled expression. Each instruction is a single int holding the opcode in its low bits,
+// and for PUSH_CONSTANT and LOAD_VARIABLE the index of the constant or variable slot above OPERAND_SHIFT
+final class Opcodes {
+    static final int PUSH_CONSTANT = 0;
+    static final int LOAD_VARIABLE = 1;
+    static final int ADD = 2;
+    static final int SUBTRACT = 3;
+    static final int MULTIPLY = 4;
+    static final int DIVIDE = 5;
+    static final int POWER = 6;
+    static final int SQRT = 7;
+    static final int LN = 8;
+    static final int LOG = 9;
+    static final int NEGATE = 10;
+
+    static final int OPERAND_SHIFT = 8;
+    static final int OPCODE_MASK = (1 << OPERAND_SHIFT) - 1;
+
+    private Opcodes() {
+    }
+
+    static int opcode(int instruction) {
+        return instruction & OPCODE_MASK;
+    }
+
+    static int operand(int instruction) {
+        return instruction >>> OPERAND_SHIFT;
+    }
+
+    // number of operands popped by the instruction
+    static int arity(int opcode) {
+        switch (opcode) {
+            case PUSH_CONSTANT:
+            case LOAD_VARIABLE:
+                return 0;
+            case SQRT:
+            case LN:
+            case LOG:
+            case NEGATE:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+}
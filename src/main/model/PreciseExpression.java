@@ -0,0 +1,634 @@
+package main.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.EmptyStackException;
+import java.util.List;
+
+// An expression whose result is its exact value rounded to a MathContext, for formulas such as financial ones where
+// 0.1+0.2 must come out as 0.3. Numbers keep the decimal value they were written with and variables are passed as
+// BigDecimal. Created by MathParser.compilePrecise; instances can be shared between threads.
+// Evaluation first runs the program in double, keeping next to every value a bound on how far it can be from the
+// exact one, which grows with the rounding of each operation and of the inputs. When every number within the bound
+// of the result rounds to the same digits, those digits are the answer, so most results cost one double evaluation
+// and a rounding. Only when the bound straddles a rounding boundary, for instance because more digits were asked
+// for than a double holds, or when a value comes too close to a division by zero or to the edge of the domain of
+// √, ln or log, is the program run again in BigDecimal. That run keeps the same kind of bound, and is repeated with
+// more digits until the result is decided or MAX_GUARD_DIGITS is reached. A program of only + - × ÷ and integer
+// powers that is still undecided after the first run is run exactly on fractions instead, which is slower but
+// settles results that lie exactly on a rounding boundary.
+// Operations that give NaN or an infinity in double throw ArithmeticException here, as there is no exact decimal
+// for them. Evaluations, and how many needed BigDecimal, are counted in the EngineMetrics of the parser, if any
+public final class PreciseExpression {
+    // extra digits of the BigDecimal runs beyond the precision asked for, doubled on each new run up to this limit
+    public static final int MAX_GUARD_DIGITS = 1024;
+    private static final int FIRST_GUARD_DIGITS = 16;
+
+    // bounds computed in double are rounded too; widening them by this much covers that for any realistic length
+    private static final double BOUND_MARGIN = 1 + 0x1p-20;
+    // slightly below ln 10, so dividing by it overestimates
+    private static final double LN_10_LOWER = 2.302585;
+
+    private static final MathContext ERROR_UP = new MathContext(8, RoundingMode.UP);
+    private static final MathContext ERROR_DOWN = new MathContext(8, RoundingMode.DOWN);
+    private static final BigDecimal DECIMAL_LN_10_LOWER = new BigDecimal("2.302585");
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+    // larger exact powers are left to the BigDecimal runs
+    private static final long MAX_FRACTION_BITS = 1 << 20;
+
+    private final CompiledExpression program;
+    private final int[] code;
+    private final double[] constants;
+    // the exact value of each constant, null for e and π
+    private final BigDecimal[] decimals;
+    // how far each constant in double is from its exact value
+    private final double[] constantErrors;
+    // whether the program can be run on fractions: no e, π, √, ln or log
+    private final boolean rational;
+    private final EngineMetrics metrics;
+
+    private PreciseExpression(CompiledExpression program, BigDecimal[] decimals, EngineMetrics metrics) {
+        this.program = program;
+        this.metrics = metrics;
+        this.code = program.code();
+        this.constants = program.constants();
+        this.decimals = decimals;
+        constantErrors = new double[constants.length];
+        for (int i = 0; i < constants.length; i++) {
+            if (decimals[i] == null || new BigDecimal(constants[i]).compareTo(decimals[i]) != 0) {
+                constantErrors[i] = Math.ulp(constants[i]) / 2;
+            }
+        }
+        boolean rational = true;
+        for (int instruction : code) {
+            int opcode = Opcodes.opcode(instruction);
+            if (opcode == Opcodes.PUSH_CONSTANT && decimals[Opcodes.operand(instruction)] == null
+                    || opcode == Opcodes.SQRT || opcode == Opcodes.LN || opcode == Opcodes.LOG) {
+                rational = false;
+            }
+        }
+        this.rational = rational;
+    }
+
+    // program must come from MathParser.toPostfix on the tokens of expression, so its constants follow the tokens
+    static PreciseExpression of(String expression, TokenBuffer tokens, CompiledExpression program, EngineMetrics metrics) {
+        BigDecimal[] decimals = new BigDecimal[program.constants().length];
+        int constant = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.kind(i) == TokenBuffer.NUMBER) {
+                char first = expression.charAt(tokens.start(i));
+                decimals[constant++] = first == 'e' || first == 'π' ? null
+                        : new BigDecimal(expression.substring(tokens.start(i), tokens.start(i) + tokens.length(i)));
+            } else if (tokens.kind(i) == TokenBuffer.NEGATE) {
+                decimals[constant++] = BigDecimal.ZERO;
+                decimals[constant++] = BigDecimal.ONE;
+            }
+        }
+        return new PreciseExpression(program, decimals, metrics);
+    }
+
+    public List<String> getVariableNames() {
+        return program.getVariableNames();
+    }
+
+    // Returns the exact value of the expression rounded to mc, without trailing zeros. mc must have a precision and
+    // a rounding mode other than UNNECESSARY. A result that cannot be told apart from a rounding boundary or from
+    // the edge of a domain with MAX_GUARD_DIGITS more digits than asked for throws ArithmeticException: with mc
+    // rounding down, 1÷3×3 is one such result
+    public BigDecimal evaluate(MathContext mc, BigDecimal... variables) {
+        if (mc.getPrecision() == 0 || mc.getRoundingMode() == RoundingMode.UNNECESSARY) {
+            throw new IllegalArgumentException("Precision and rounding must be given: " + mc);
+        }
+        int variableCount = program.getVariableNames().size();
+        if (variables.length < variableCount) {
+            throw new IllegalArgumentException("Expected " + variableCount + " variable values but got " + variables.length);
+        }
+        if (code.length == 0) {
+            throw new EmptyStackException();
+        }
+
+        if (metrics != null) {
+            metrics.recordPreciseEvaluation();
+        }
+        BigDecimal result = evaluateDouble(mc, variables);
+        if (result != null) {
+            return result;
+        }
+        if (metrics != null) {
+            metrics.recordPreciseFallback();
+        }
+        boolean fractionsTried = !rational;
+        for (int guard = FIRST_GUARD_DIGITS; ; guard *= 2) {
+            result = new DecimalRun(mc.getPrecision() + guard, guard >= MAX_GUARD_DIGITS).evaluate(mc, variables);
+            if (result != null) {
+                return result;
+            }
+            // a result exactly halfway between two roundings is never decided by more digits, only exactly
+            if (!fractionsTried) {
+                fractionsTried = true;
+                result = evaluateFractions(mc, variables);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+    }
+
+    // The result, or null if the bound is too wide to decide it
+    private BigDecimal evaluateDouble(MathContext mc, BigDecimal[] variables) {
+        int depth = program.getMaxStackDepth();
+        double[] values = new double[depth];
+        double[] errors = new double[depth];
+        int top = -1;
+
+        for (int instruction : code) {
+            int opcode = Opcodes.opcode(instruction);
+            if (opcode == Opcodes.PUSH_CONSTANT || opcode == Opcodes.LOAD_VARIABLE) {
+                top++;
+                int operand = Opcodes.operand(instruction);
+                if (opcode == Opcodes.PUSH_CONSTANT) {
+                    values[top] = constants[operand];
+                    errors[top] = constantErrors[operand];
+                } else {
+                    BigDecimal variable = variables[operand];
+                    values[top] = variable.doubleValue();
+                    // integers of up to 15 digits are exact in double
+                    errors[top] = variable.scale() <= 0 && variable.precision() - variable.scale() <= 15
+                            ? 0 : Math.ulp(values[top]) / 2;
+                }
+                continue;
+            }
+
+            double right = values[top];
+            double rightError = errors[top];
+            if (Opcodes.arity(opcode) == 1) {
+                double value;
+                double error;
+                switch (opcode) {
+                    case Opcodes.SQRT:
+                        if (!(right - rightError >= 0)) {
+                            return null;
+                        }
+                        value = Math.sqrt(right);
+                        error = Math.fma(value, value, -right) == 0 ? 0 : Math.ulp(value) / 2;
+                        if (rightError > 0) {
+                            // |√a - √b| = |a-b| ÷ (√a + √b)
+                            error += rightError / (value + Math.sqrt(right - rightError));
+                        }
+                        break;
+                    case Opcodes.LN:
+                        if (!(right - rightError > 0)) {
+                            return null;
+                        }
+                        // |ln a - ln b| <= |a-b| ÷ min(a, b), and Math.log is within one ulp
+                        value = Math.log(right);
+                        error = rightError / (right - rightError) + Math.ulp(value);
+                        break;
+                    case Opcodes.LOG:
+                        if (!(right - rightError > 0)) {
+                            return null;
+                        }
+                        value = Math.log10(right);
+                        error = rightError / ((right - rightError) * LN_10_LOWER) + Math.ulp(value);
+                        break;
+                    default: // NEGATE
+                        value = -right;
+                        error = rightError;
+                        break;
+                }
+                values[top] = value;
+                errors[top] = error;
+                continue;
+            }
+
+            top--;
+            double left = values[top];
+            double leftError = errors[top];
+            double value;
+            double error;
+            switch (opcode) {
+                case Opcodes.ADD:
+                    value = left + right;
+                    error = leftError + rightError + sumRoundingError(left, right, value);
+                    break;
+                case Opcodes.SUBTRACT:
+                    value = left - right;
+                    error = leftError + rightError + sumRoundingError(left, -right, value);
+                    break;
+                case Opcodes.MULTIPLY:
+                    value = left * right;
+                    error = Math.abs(left) * rightError + Math.abs(right) * leftError + leftError * rightError
+                            + Math.abs(Math.fma(left, right, -value));
+                    break;
+                case Opcodes.DIVIDE:
+                    if (!(Math.abs(right) > rightError)) {
+                        return null;
+                    }
+                    // |a÷b - c÷d| <= (|a-c| + |a÷b| |b-d|) ÷ |d|
+                    value = left / right;
+                    error = (leftError + (Math.abs(value) + Math.ulp(value)) * rightError) / (Math.abs(right) - rightError)
+                            + (Math.fma(value, right, -left) == 0 ? 0 : Math.ulp(value) / 2);
+                    break;
+                default: // POWER
+                    value = Math.pow(left, right);
+                    error = powerError(left, leftError, right, rightError, value);
+                    break;
+            }
+            if (Double.isNaN(error)) {
+                return null;
+            }
+            values[top] = value;
+            errors[top] = error;
+        }
+
+        double value = values[top];
+        double error = errors[top];
+        if (!Double.isFinite(value) || !Double.isFinite(error)) {
+            return null;
+        }
+        if (error == 0) {
+            return normalize(new BigDecimal(value).round(mc));
+        }
+        error *= BOUND_MARGIN;
+        BigDecimal low = new BigDecimal(Math.nextDown(value - error)).round(mc);
+        BigDecimal high = new BigDecimal(Math.nextUp(value + error)).round(mc);
+        return low.compareTo(high) == 0 ? normalize(high) : null;
+    }
+
+    // The exact result rounded to mc, or null if an exponent is not an integer or too large to raise to exactly
+    private BigDecimal evaluateFractions(MathContext mc, BigDecimal[] variables) {
+        Fraction[] stack = new Fraction[program.getMaxStackDepth()];
+        int top = -1;
+        for (int instruction : code) {
+            int operand = Opcodes.operand(instruction);
+            switch (Opcodes.opcode(instruction)) {
+                case Opcodes.PUSH_CONSTANT -> stack[++top] = Fraction.of(decimals[operand]);
+                case Opcodes.LOAD_VARIABLE -> stack[++top] = Fraction.of(variables[operand]);
+                case Opcodes.ADD -> {
+                    top--;
+                    stack[top] = stack[top].add(stack[top + 1]);
+                }
+                case Opcodes.SUBTRACT -> {
+                    top--;
+                    stack[top] = stack[top].add(stack[top + 1].negate());
+                }
+                case Opcodes.MULTIPLY -> {
+                    top--;
+                    stack[top] = stack[top].multiply(stack[top + 1]);
+                }
+                case Opcodes.DIVIDE -> {
+                    top--;
+                    stack[top] = stack[top].multiply(stack[top + 1].reciprocal());
+                }
+                case Opcodes.POWER -> {
+                    top--;
+                    stack[top] = stack[top].pow(stack[top + 1]);
+                    if (stack[top] == null) {
+                        return null;
+                    }
+                }
+                default -> stack[top] = stack[top].negate(); // NEGATE
+            }
+        }
+        Fraction result = stack[top];
+        return normalize(new BigDecimal(result.numerator).divide(new BigDecimal(result.denominator), mc));
+    }
+
+    // the exact rounding error of a + b, by Knuth's TwoSum
+    private static double sumRoundingError(double a, double b, double sum) {
+        double bPart = sum - a;
+        return Math.abs((a - (sum - bPart)) + (b - bPart));
+    }
+
+    // Bound for a^b, or NaN when there is none. Math.pow is within one ulp
+    private static double powerError(double base, double baseError, double exponent, double exponentError, double value) {
+        if (!Double.isFinite(value)) {
+            return Double.NaN;
+        }
+        if (exponentError == 0 && exponent == Math.rint(exponent) && Math.abs(exponent) < 0x1p31) {
+            if (exponent == 0) {
+                return 0;
+            }
+            // |a^n - b^n| <= |n| m^(n-1) |a-b|, with m the largest |a| for positive n and the smallest for negative n
+            double bound = exponent > 0 ? Math.abs(base) + baseError : Math.abs(base) - baseError;
+            if (!(bound > 0)) {
+                return baseError == 0 ? Math.ulp(value) : Double.NaN;
+            }
+            double error = baseError == 0 ? 0 : Math.abs(exponent) * Math.pow(bound, exponent - 1) * baseError;
+            return error + Math.ulp(value);
+        }
+        if (!(base - baseError > 0)) {
+            return Double.NaN;
+        }
+        // a^b = e^(b ln a): bound the error of b ln a, then e^x grows by a factor of at most 1 + 2x for x below 1
+        double lnError = -Math.log1p(-baseError / base);
+        double exponentBound = Math.abs(exponent) * lnError + exponentError * (Math.abs(Math.log(base)) + lnError);
+        if (!(exponentBound < 1)) {
+            return Double.NaN;
+        }
+        return (Math.abs(value) + Math.ulp(value)) * 2 * exponentBound + Math.ulp(value);
+    }
+
+    // without trailing zeros, but written out in full rather than with a positive exponent
+    private static BigDecimal normalize(BigDecimal value) {
+        BigDecimal stripped = value.stripTrailingZeros();
+        return stripped.scale() < 0 ? stripped.setScale(0) : stripped;
+    }
+
+    // A fraction in lowest terms, with a positive denominator
+    private record Fraction(BigInteger numerator, BigInteger denominator) {
+        static Fraction of(BigDecimal value) {
+            if (value.scale() <= 0) {
+                return new Fraction(value.toBigInteger(), BigInteger.ONE);
+            }
+            return reduce(value.unscaledValue(), BigInteger.TEN.pow(value.scale()));
+        }
+
+        static Fraction reduce(BigInteger numerator, BigInteger denominator) {
+            if (denominator.signum() < 0) {
+                numerator = numerator.negate();
+                denominator = denominator.negate();
+            }
+            BigInteger divisor = numerator.gcd(denominator);
+            if (divisor.signum() == 0 || divisor.equals(BigInteger.ONE)) {
+                return new Fraction(numerator, denominator);
+            }
+            return new Fraction(numerator.divide(divisor), denominator.divide(divisor));
+        }
+
+        Fraction add(Fraction other) {
+            return reduce(numerator.multiply(other.denominator).add(other.numerator.multiply(denominator)),
+                    denominator.multiply(other.denominator));
+        }
+
+        Fraction multiply(Fraction other) {
+            return reduce(numerator.multiply(other.numerator), denominator.multiply(other.denominator));
+        }
+
+        Fraction negate() {
+            return new Fraction(numerator.negate(), denominator);
+        }
+
+        Fraction reciprocal() {
+            if (numerator.signum() == 0) {
+                throw new ArithmeticException("Division by zero");
+            }
+            return reduce(denominator, numerator);
+        }
+
+        // null if the exponent is not an integer, or the power would have more than MAX_FRACTION_BITS
+        Fraction pow(Fraction exponent) {
+            if (!exponent.denominator.equals(BigInteger.ONE)) {
+                return null;
+            }
+            long bits = Math.max(numerator.bitLength(), denominator.bitLength());
+            if (exponent.numerator.bitLength() > 31 || bits * exponent.numerator.abs().longValue() > MAX_FRACTION_BITS) {
+                return null;
+            }
+            int n = exponent.numerator.intValue();
+            Fraction power = new Fraction(numerator.pow(Math.abs(n)), denominator.pow(Math.abs(n)));
+            return n < 0 ? power.reciprocal() : power;
+        }
+    }
+
+    private record Bound(BigDecimal value, BigDecimal error) {
+    }
+
+    // One evaluation in BigDecimal, rounding every value to precision digits
+    private final class DecimalRun {
+        private final MathContext working;
+        private final int precision;
+        // whether this is the last run: undecided operations throw instead of asking for more digits
+        private final boolean last;
+
+        DecimalRun(int precision, boolean last) {
+            this.working = new MathContext(precision, RoundingMode.HALF_EVEN);
+            this.precision = precision;
+            this.last = last;
+        }
+
+        // The result, or null if more digits are needed
+        BigDecimal evaluate(MathContext mc, BigDecimal[] variables) {
+            Bound[] stack = new Bound[program.getMaxStackDepth()];
+            int top = -1;
+            for (int instruction : code) {
+                int opcode = Opcodes.opcode(instruction);
+                int operand = Opcodes.operand(instruction);
+                Bound result;
+                switch (opcode) {
+                    case Opcodes.PUSH_CONSTANT -> {
+                        BigDecimal decimal = decimals[operand];
+                        if (decimal != null) {
+                            result = exact(decimal);
+                        } else {
+                            decimal = constants[operand] == Math.E ? DecimalMath.e(working) : DecimalMath.pi(working);
+                            result = new Bound(decimal, decimal.ulp());
+                        }
+                    }
+                    case Opcodes.LOAD_VARIABLE -> result = exact(variables[operand]);
+                    case Opcodes.SQRT -> result = sqrt(stack[top--]);
+                    case Opcodes.LN -> result = ln(stack[top--]);
+                    case Opcodes.LOG -> result = log(stack[top--]);
+                    case Opcodes.NEGATE -> {
+                        Bound bound = stack[top--];
+                        result = new Bound(bound.value.negate(), bound.error);
+                    }
+                    default -> {
+                        Bound right = stack[top--];
+                        Bound left = stack[top--];
+                        result = switch (opcode) {
+                            case Opcodes.ADD -> add(left, right.value, right.error);
+                            case Opcodes.SUBTRACT -> add(left, right.value.negate(), right.error);
+                            case Opcodes.MULTIPLY -> multiply(left, right);
+                            case Opcodes.DIVIDE -> divide(left, right);
+                            default -> power(left, right);
+                        };
+                    }
+                }
+                if (result == null) {
+                    return null;
+                }
+                stack[++top] = result;
+            }
+
+            Bound result = stack[top];
+            if (result.error.signum() == 0) {
+                return normalize(result.value.round(mc));
+            }
+            BigDecimal low = result.value.subtract(result.error).round(mc);
+            BigDecimal high = result.value.add(result.error).round(mc);
+            if (low.compareTo(high) == 0) {
+                return normalize(high);
+            }
+            return undecided("Result is too close to a rounding boundary to round to " + mc.getPrecision() + " digits");
+        }
+
+        // null to ask for another run, or the failure if this is the last one
+        private <T> T undecided(String message) {
+            if (last) {
+                throw new ArithmeticException(message);
+            }
+            return null;
+        }
+
+        private Bound exact(BigDecimal value) {
+            return new Bound(value, BigDecimal.ZERO);
+        }
+
+        // value rounded to the working precision, with error plus the rounding as its bound
+        private Bound round(BigDecimal value, BigDecimal error) {
+            BigDecimal rounded = value.round(working);
+            return new Bound(rounded, error.add(rounded.subtract(value).abs(), ERROR_UP));
+        }
+
+        private Bound add(Bound left, BigDecimal right, BigDecimal rightError) {
+            BigDecimal error = left.error.add(rightError, ERROR_UP);
+            // adding numbers of very different sizes exactly would need as many digits as the gap between them
+            if (Math.abs((long) left.value.scale() - right.scale()) > 2L * precision) {
+                BigDecimal sum = left.value.add(right, working);
+                return new Bound(sum, error.add(sum.ulp(), ERROR_UP));
+            }
+            return round(left.value.add(right), error);
+        }
+
+        private Bound multiply(Bound left, Bound right) {
+            BigDecimal error = left.value.abs().multiply(right.error)
+                    .add(right.value.abs().multiply(left.error))
+                    .add(left.error.multiply(right.error), ERROR_UP);
+            return round(left.value.multiply(right.value), error);
+        }
+
+        private Bound divide(Bound left, Bound right) {
+            if (right.value.abs().compareTo(right.error) <= 0) {
+                if (right.error.signum() == 0) {
+                    throw new ArithmeticException("Division by zero");
+                }
+                return undecided("Division by zero");
+            }
+            BigDecimal quotient = left.value.divide(right.value, working);
+            BigDecimal rounding = quotient.multiply(right.value).compareTo(left.value) == 0 ? BigDecimal.ZERO : quotient.ulp();
+            BigDecimal numerator = left.error.add(quotient.abs().add(quotient.ulp()).multiply(right.error), ERROR_UP);
+            BigDecimal denominator = right.value.abs().subtract(right.error, ERROR_DOWN);
+            BigDecimal error = numerator.signum() == 0 ? rounding
+                    : numerator.divide(denominator, ERROR_UP).add(rounding, ERROR_UP);
+            return new Bound(quotient, error);
+        }
+
+        private Bound power(Bound base, Bound exponent) {
+            BigDecimal integer = exponent.error.signum() == 0 ? exponent.value.stripTrailingZeros() : null;
+            if (integer != null && integer.scale() <= 0 && integer.abs().compareTo(BigDecimal.valueOf(Integer.MAX_VALUE)) <= 0) {
+                // by repeated squaring, then one division for a negative exponent
+                int n = integer.intValue();
+                Bound result = exact(BigDecimal.ONE);
+                Bound square = base;
+                for (int remaining = Math.abs(n); remaining > 0; remaining >>= 1) {
+                    if ((remaining & 1) != 0) {
+                        result = multiply(result, square);
+                    }
+                    if (remaining > 1) {
+                        square = multiply(square, square);
+                    }
+                }
+                return n < 0 ? divide(exact(BigDecimal.ONE), result) : result;
+            }
+
+            BigDecimal lowest = base.value.subtract(base.error);
+            if (lowest.signum() <= 0) {
+                if (base.value.signum() == 0 && base.error.signum() == 0) {
+                    // 0^b is 0 for positive b and infinite for negative b
+                    if (exponent.value.subtract(exponent.error).signum() > 0) {
+                        return exact(BigDecimal.ZERO);
+                    }
+                    if (exponent.value.add(exponent.error).signum() < 0) {
+                        throw new ArithmeticException("Division by zero");
+                    }
+                    return undecided("Division by zero");
+                }
+                if (base.value.add(base.error).signum() < 0 && exponent.error.signum() == 0) {
+                    throw new ArithmeticException("Fractional power of a negative number");
+                }
+                return undecided("Fractional power of a negative number");
+            }
+
+            // a^b = e^(b ln a), with the error of ln as for LN
+            Bound ln = ln(base);
+            Bound product = multiply(exponent, ln);
+            if (product.error.compareTo(BigDecimal.ONE) >= 0) {
+                return undecided("Result is too large");
+            }
+            BigDecimal value = DecimalMath.exp(product.value, working);
+            // e^x grows by a factor of at most 1 + 2x for x below 1
+            BigDecimal error = value.abs().add(value.ulp()).multiply(TWO).multiply(product.error).add(value.ulp(), ERROR_UP);
+            return new Bound(value, error);
+        }
+
+        private Bound sqrt(Bound operand) {
+            BigDecimal lowest = operand.value.subtract(operand.error);
+            if (lowest.signum() < 0) {
+                if (operand.value.add(operand.error).signum() < 0) {
+                    throw new ArithmeticException("Argument of √ must not be negative");
+                }
+                return undecided("Argument of √ must not be negative");
+            }
+            BigDecimal value = operand.value.sqrt(working);
+            BigDecimal error = value.multiply(value).compareTo(operand.value) == 0 ? BigDecimal.ZERO : value.ulp();
+            if (operand.error.signum() != 0) {
+                // |√a - √b| = |a-b| ÷ (√a + √b), and √a is at least value less one ulp
+                BigDecimal denominator = value.subtract(value.ulp(), ERROR_DOWN);
+                if (denominator.signum() <= 0) {
+                    return undecided("Argument of √ must not be negative");
+                }
+                error = operand.error.divide(denominator, ERROR_UP).add(error, ERROR_UP);
+            }
+            return new Bound(value, error);
+        }
+
+        private Bound ln(Bound operand) {
+            BigDecimal lowest = checkLogarithm(operand, "Argument of ln must be positive");
+            if (lowest == null) {
+                return null;
+            }
+            if (operand.value.compareTo(BigDecimal.ONE) == 0 && operand.error.signum() == 0) {
+                return exact(BigDecimal.ZERO);
+            }
+            BigDecimal value = DecimalMath.ln(operand.value, working);
+            return new Bound(value, logarithmError(operand.error, lowest, BigDecimal.ONE).add(value.ulp(), ERROR_UP));
+        }
+
+        private Bound log(Bound operand) {
+            BigDecimal lowest = checkLogarithm(operand, "Argument of log must be positive");
+            if (lowest == null) {
+                return null;
+            }
+            BigDecimal stripped = operand.value.stripTrailingZeros();
+            if (stripped.unscaledValue().equals(BigInteger.ONE) && operand.error.signum() == 0) {
+                // a power of ten
+                return exact(BigDecimal.valueOf(-(long) stripped.scale()));
+            }
+            BigDecimal value = DecimalMath.log10(operand.value, working);
+            return new Bound(value, logarithmError(operand.error, lowest, DECIMAL_LN_10_LOWER).add(value.ulp(), ERROR_UP));
+        }
+
+        // The lowest value the operand can have, or null to ask for more digits
+        private BigDecimal checkLogarithm(Bound operand, String message) {
+            BigDecimal lowest = operand.value.subtract(operand.error);
+            if (lowest.signum() > 0) {
+                return lowest;
+            }
+            if (operand.value.add(operand.error).signum() <= 0) {
+                throw new ArithmeticException(message);
+            }
+            return undecided(message);
+        }
+
+        // |ln a - ln b| <= |a-b| ÷ min(a, b)
+        private BigDecimal logarithmError(BigDecimal error, BigDecimal lowest, BigDecimal divisor) {
+            if (error.signum() == 0) {
+                return BigDecimal.ZERO;
+            }
+            return error.divide(lowest.multiply(divisor, ERROR_DOWN), ERROR_UP);
+        }
+    }
+}
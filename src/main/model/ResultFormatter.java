@@ -0,0 +1,312 @@
+package main.model;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+// Formats results the way the calculator displays them: the shortest decimal that reads back as the result (what
+// Double.toString gives) rounded half up to 12 decimal places, shown as an integer when the rounded value is one
+// that fits in an int, and like Double.toString otherwise. NaN and the infinities throw NumberFormatException.
+// The shortest decimal is found with Schubfach (R. Giulietti, "The Schubfach way to render doubles"), the
+// algorithm behind Double.toString, and rounded and written out as digits straight into a byte[] or StringBuilder,
+// so formatting a result creates no BigDecimal or intermediate String. The one exception is a rounded result of
+// 16 or 17 significant digits, which need not be exactly representable: it is divided out as a double, or read
+// back with Double.parseDouble when it has more digits than a double holds.
+// An instance keeps scratch state and can be reused for any number of results: use one per thread
+public final class ResultFormatter {
+    // longest output, as in -1.2345678901234567E-300
+    public static final int MAX_LENGTH = 24;
+
+    private static final int FRACTION_DIGITS = 12;
+    // decimals of up to 15 significant digits read back as a double exactly, so they print as themselves
+    private static final int EXACT_DIGITS = 15;
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    // Schubfach constants for double: precision, smallest exponent, hidden bit, and the bounds of the table of
+    // powers of ten
+    private static final int P = 53;
+    private static final int Q_MIN = -1074;
+    private static final long C_MIN = 1L << (P - 1);
+    private static final long C_TINY = 3;
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+    private static final long MASK_63 = (1L << 63) - 1;
+
+    private static final ThreadLocal<ResultFormatter> FORMATTERS = ThreadLocal.withInitial(ResultFormatter::new);
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final byte[] buffer = new byte[MAX_LENGTH];
+    // for append, which StringBuilder copies in one go where it would check and grow for each char on its own
+    private final char[] chars = new char[MAX_LENGTH];
+    // the last decimal found by shortest: digits × 10^exponent
+    private long digits;
+    private int exponent;
+
+    // Formats a result with a formatter kept per thread
+    public static String format(double result) {
+        ResultFormatter formatter = FORMATTERS.get();
+        int length = formatter.write(result, formatter.buffer, 0);
+        return new String(formatter.buffer, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    public StringBuilder append(double result, StringBuilder out) {
+        int length = write(result, buffer, 0);
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) buffer[i];
+        }
+        return out.append(chars, 0, length);
+    }
+
+    // Writes the result as ASCII at offset, which must leave room for MAX_LENGTH bytes, and returns the offset
+    // after it
+    public int write(double result, byte[] out, int offset) {
+        if (!Double.isFinite(result)) {
+            throw new NumberFormatException("Not a finite number: " + result);
+        }
+        shortest(Math.abs(result));
+
+        // round half up to FRACTION_DIGITS decimal places; past 17 dropped digits nothing is left
+        boolean rounded = false;
+        if (exponent < -FRACTION_DIGITS) {
+            int dropped = -FRACTION_DIGITS - exponent;
+            if (dropped >= POWERS_OF_TEN.length) {
+                digits = 0;
+            } else {
+                long unit = POWERS_OF_TEN[dropped];
+                long remainder = digits % unit;
+                digits = digits / unit + (remainder >= unit / 2 ? 1 : 0);
+                rounded = remainder != 0;
+            }
+            exponent = -FRACTION_DIGITS;
+        }
+        if (digits == 0) {
+            out[offset] = '0';
+            return offset + 1;
+        }
+        while (digits % 10 == 0) {
+            digits /= 10;
+            exponent++;
+        }
+
+        if (rounded && digitCount(digits) > EXACT_DIGITS) {
+            // the rounded decimal may not be a double, and the double it reads back as may print differently. With
+            // fewer than 2^53 digits both digits and 10^-exponent are doubles, so one division rounds it correctly
+            double value;
+            if (digits < 1L << P && exponent < 0) {
+                value = digits / (double) POWERS_OF_TEN[-exponent];
+            } else {
+                int length = writeDecimal(false, buffer, 0);
+                value = Double.parseDouble(new String(buffer, 0, length, StandardCharsets.ISO_8859_1));
+            }
+            shortest(value);
+            while (digits % 10 == 0) {
+                digits /= 10;
+                exponent++;
+            }
+        }
+
+        if (exponent >= 0 && digitCount(digits) + exponent <= 10) {
+            long value = digits * POWERS_OF_TEN[exponent];
+            if (result < 0 ? value <= -(long) Integer.MIN_VALUE : value <= Integer.MAX_VALUE) {
+                if (result < 0) {
+                    out[offset++] = '-';
+                }
+                return writeDigits(value, digitCount(value), out, offset);
+            }
+        }
+        return writeDecimal(result < 0, out, offset);
+    }
+
+    // Writes digits × 10^exponent like Double.toString: plainly from 10^-3 up to 10^7, in scientific notation
+    // otherwise
+    private int writeDecimal(boolean negative, byte[] out, int offset) {
+        if (negative) {
+            out[offset++] = '-';
+        }
+        int count = digitCount(digits);
+        int scientificExponent = count - 1 + exponent;
+        if (scientificExponent >= -3 && scientificExponent < 7) {
+            if (scientificExponent < 0) {
+                out[offset++] = '0';
+                out[offset++] = '.';
+                for (int i = -1; i > scientificExponent; i--) {
+                    out[offset++] = '0';
+                }
+                return writeDigits(digits, count, out, offset);
+            }
+            int integerDigits = scientificExponent + 1;
+            if (count <= integerDigits) {
+                offset = writeDigits(digits, count, out, offset);
+                for (int i = count; i < integerDigits; i++) {
+                    out[offset++] = '0';
+                }
+                out[offset++] = '.';
+                out[offset++] = '0';
+                return offset;
+            }
+            long unit = POWERS_OF_TEN[count - integerDigits];
+            offset = writeDigits(digits / unit, integerDigits, out, offset);
+            out[offset++] = '.';
+            return writeDigits(digits % unit, count - integerDigits, out, offset);
+        }
+
+        long unit = POWERS_OF_TEN[count - 1];
+        out[offset++] = (byte) ('0' + digits / unit);
+        out[offset++] = '.';
+        offset = count == 1 ? writeDigits(0, 1, out, offset) : writeDigits(digits % unit, count - 1, out, offset);
+        out[offset++] = 'E';
+        if (scientificExponent < 0) {
+            out[offset++] = '-';
+            scientificExponent = -scientificExponent;
+        }
+        return writeDigits(scientificExponent, digitCount(scientificExponent), out, offset);
+    }
+
+    // writes value as exactly count digits, with leading zeros
+    private static int writeDigits(long value, int count, byte[] out, int offset) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            out[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + count;
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (count < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[count]) {
+            count++;
+        }
+        return count;
+    }
+
+    // Sets digits and exponent to the shortest decimal that rounds to v, a finite non-negative double. Among
+    // several of the same length the closest is taken, and a decimal is never shorter than two digits unless v
+    // is an integer, as in Double.toString
+    private void shortest(double v) {
+        long bits = Double.doubleToRawLongBits(v);
+        long t = bits & (C_MIN - 1);
+        int bq = (int) (bits >>> (P - 1));
+        if (bq != 0) {
+            int q = bq + Q_MIN - 1;
+            long c = C_MIN | t;
+            // integers print as themselves
+            if (q < 0 && -q < P) {
+                long f = c >> -q;
+                if (f << -q == c) {
+                    digits = f;
+                    exponent = 0;
+                    return;
+                }
+            }
+            shortest(q, c, 0);
+        } else if (t != 0) {
+            // subnormal: the smallest ones need one more digit than their precision gives
+            if (t < C_TINY) {
+                shortest(Q_MIN, 10 * t, -1);
+            } else {
+                shortest(Q_MIN, t, 0);
+            }
+        } else {
+            digits = 0;
+            exponent = 0;
+        }
+    }
+
+    // v = c × 2^q. Scales the interval of numbers rounding to v by a power of ten so that it contains at most one
+    // multiple of ten and few integers, then picks the shortest of them
+    private void shortest(int q, long c, int dk) {
+        int out = (int) c & 1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != C_MIN || q == Q_MIN) {
+            cbl = cb - 2;
+            k = floorLog10Pow2(q);
+        } else {
+            // the interval below a power of two is half as wide
+            cbl = cb - 1;
+            k = floorLog10ThreeQuartersPow2(q);
+        }
+        int h = q + floorLog2Pow10(-k) + 2;
+        long g1 = PowersOfTen.G[(k - K_MIN) << 1];
+        long g0 = PowersOfTen.G[(k - K_MIN) << 1 | 1];
+        long vb = roundToOdd(g1, g0, cb << h);
+        long vbl = roundToOdd(g1, g0, cbl << h);
+        long vbr = roundToOdd(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // s ÷ 10 × 10, with the division as a multiplication by the inverse of ten
+            long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                digits = upin ? sp10 : tp10;
+                exponent = k;
+                return;
+            }
+        }
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            digits = uin ? s : t;
+        } else {
+            long cmp = vb - (s + t << 1);
+            digits = cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t;
+        }
+        exponent = k + dk;
+    }
+
+    // the high bits of g × cp, rounded to odd
+    private static long roundToOdd(long g1, long g0, long cp) {
+        long x1 = Math.multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = Math.multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    private static int floorLog10Pow2(int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    private static int floorLog10ThreeQuartersPow2(int e) {
+        return (int) (e * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+
+    private static int floorLog2Pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+
+    // For k from K_MIN to K_MAX, 10^-k = β × 2^r with β in [2^125, 2^126), and g = ⌊β⌋ + 1 split into its high
+    // and low 63 bits. Computed on first use, as Schubfach only needs them once a result has fractional digits
+    private static final class PowersOfTen {
+        static final long[] G = new long[(K_MAX - K_MIN + 1) * 2];
+
+        static {
+            BigInteger mask = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+            for (int k = K_MIN; k <= K_MAX; k++) {
+                int shift = 125 - floorLog2Pow10(-k);
+                BigInteger beta;
+                if (k <= 0) {
+                    beta = BigInteger.TEN.pow(-k);
+                    beta = shift >= 0 ? beta.shiftLeft(shift) : beta.shiftRight(-shift);
+                } else {
+                    beta = BigInteger.ONE.shiftLeft(shift).divide(BigInteger.TEN.pow(k));
+                }
+                BigInteger g = beta.add(BigInteger.ONE);
+                G[(k - K_MIN) << 1] = g.shiftRight(63).longValueExact();
+                G[(k - K_MIN) << 1 | 1] = g.and(mask).longValueExact();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package main.model;
+
+// Evaluates a compiled expression with the interpreter until it has been evaluated compileThreshold times, then
+// generates bytecode for it with BytecodeCompiler and uses that from then on. Formulas that are only used a few
+// times never pay for code generation, while hot ones end up as JIT compiled Java code.
+// Safe to use from several threads: the invocation count is only approximate, and the generated evaluator is
+// created once and then published to every thread
+public final class TieredExpression implements ExpressionEvaluator {
+    public static final int DEFAULT_COMPILE_THRESHOLD = 10_000;
+    private static final double[] NO_VARIABLES = new double[0];
+
+    private final CompiledExpression expression;
+    private final int compileThreshold;
+    private int invocations;
+    private volatile ExpressionEvaluator compiled;
+
+    public TieredExpression(CompiledExpression expression) {
+        this(expression, DEFAULT_COMPILE_THRESHOLD);
+    }
+
+    public TieredExpression(CompiledExpression expression, int compileThreshold) {
+        if (compileThreshold < 0) {
+            throw new IllegalArgumentException("Compile threshold must not be negative: " + compileThreshold);
+        }
+        this.expression = expression;
+        this.compileThreshold = compileThreshold;
+    }
+
+    public CompiledExpression getExpression() {
+        return expression;
+    }
+
+    // True once evaluation has switched to generated bytecode
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    public double evaluate() {
+        return evaluate(NO_VARIABLES);
+    }
+
+    @Override
+    public double evaluate(double[] variables) {
+        ExpressionEvaluator evaluator = compiled;
+        if (evaluator != null) {
+            return evaluator.evaluate(variables);
+        }
+        if (++invocations > compileThreshold) {
+            return compile().evaluate(variables);
+        }
+        return expression.evaluate(variables);
+    }
+
+    private synchronized ExpressionEvaluator compile() {
+        if (compiled == null) {
+            compiled = BytecodeCompiler.compile(expression);
+        }
+        return compiled;
+    }
+}
@@ -0,0 +1,110 @@
+package main.model;
+
+import java.util.Arrays;
+
+// Compact output of MathTokenizer.tokenize(String, TokenBuffer): one entry per token spread over parallel primitive
+// arrays, holding its kind, where it starts in the source and how many characters it spans, and the parsed value of
+// numbers (including the constants e and π) or the slot of variables. Tokens inserted by the tokenizer itself, such
+// as the multiplication in 2π, have a length of 0. A buffer can be cleared and reused for any number of expressions
+public final class TokenBuffer {
+    public static final byte NUMBER = 0;
+    public static final byte VARIABLE = 1;
+    public static final byte PLUS = 2;
+    public static final byte MINUS = 3;
+    public static final byte TIMES = 4;
+    public static final byte DIVIDE = 5;
+    public static final byte POWER = 6;
+    public static final byte NEGATE = 7; // unary en dash
+    public static final byte LEFT_PARENTHESIS = 8;
+    public static final byte RIGHT_PARENTHESIS = 9;
+    public static final byte SQRT = 10;
+    public static final byte LN = 11;
+    public static final byte LOG = 12;
+
+    private byte[] kinds;
+    private int[] starts;
+    private int[] lengths;
+    private double[] values;
+    private int size;
+    private final int maximumSize;
+
+    public TokenBuffer() {
+        this(16);
+    }
+
+    public TokenBuffer(int initialCapacity) {
+        this(initialCapacity, Integer.MAX_VALUE);
+    }
+
+    // A buffer that refuses to hold more than maximumSize tokens, so the tokenizer gives up on an oversized
+    // expression as soon as it reaches the limit instead of reading the rest of it
+    public TokenBuffer(int initialCapacity, int maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("Maximum size must not be negative: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        int capacity = Math.max(Math.min(initialCapacity, maximumSize), 1);
+        kinds = new byte[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        values = new double[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte kind(int index) {
+        return kinds[index];
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    // Parsed value of a NUMBER token
+    public double number(int index) {
+        return values[index];
+    }
+
+    // Slot of a VARIABLE token, its position in the names the tokenizer was created with
+    public int slot(int index) {
+        return (int) values[index];
+    }
+
+    // Kind of the last token, or -1 if the buffer is empty
+    public int lastKind() {
+        return size == 0 ? -1 : kinds[size - 1];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    // Drops the tokens after the first size ones
+    void truncate(int size) {
+        this.size = size;
+    }
+
+    void add(byte kind, int start, int length, double value) {
+        if (size == maximumSize) {
+            throw new IllegalArgumentException("Expression has more than " + maximumSize + " tokens");
+        }
+        if (size == kinds.length) {
+            int capacity = (int) Math.min((long) size * 2, maximumSize);
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        kinds[size] = kind;
+        starts[size] = start;
+        lengths[size] = length;
+        values[size] = value;
+        size++;
+    }
+}
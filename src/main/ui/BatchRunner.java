@@ -0,0 +1,185 @@
+package main.ui;
+
+import main.model.ExpressionCache;
+import main.model.MathParser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Headless entry point: reads one expression per line from a file or stdin and writes one result per line to
+// stdout, in input order. Lines are evaluated in chunks on a pool of worker threads. Only a few chunks per worker
+// are in flight at any time, so memory use does not depend on the size of the input.
+// A line that fails prints SYNTAX ERROR or ARITHMETIC ERROR in place of its result, like the calculator display,
+// and the reason goes to stderr with the line number. An empty line prints an empty line
+public class BatchRunner {
+    static final int CHUNK_SIZE = 1024;
+    private static final int CHUNKS_PER_WORKER = 4;
+    private static final int CACHE_SIZE = 4096;
+
+    private final MathParser parser = new MathParser(new ExpressionCache(CACHE_SIZE));
+    private final int workers;
+
+    public BatchRunner(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be positive: " + workers);
+        }
+        this.workers = workers;
+    }
+
+    // Usage: --batch [--threads N] [file | -]. Reads stdin when no file or "-" is given. Exits with 1 when any
+    // line failed and 2 when the input could not be read
+    public static void main(String[] args) {
+        int workers = Runtime.getRuntime().availableProcessors();
+        String file = "-";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--batch" -> {
+                }
+                case "--threads" -> {
+                    if (i + 1 == args.length) {
+                        usage("Missing value for --threads");
+                    }
+                    try {
+                        workers = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        usage("Not a number: " + args[i]);
+                    }
+                }
+                default -> {
+                    // "-" alone is stdin, anything else starting with '-' is an option this runner does not know
+                    if (args[i].startsWith("-") && !args[i].equals("-")) {
+                        usage("Unknown option: " + args[i]);
+                    }
+                    file = args[i];
+                }
+            }
+        }
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        Writer err = new BufferedWriter(new OutputStreamWriter(System.err, StandardCharsets.UTF_8));
+        try (BufferedReader in = file.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16)
+                : Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8)) {
+            long failures = new BatchRunner(workers).run(in, out, err);
+            System.exit(failures == 0 ? 0 : 1);
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Cannot read " + file + ": " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("Usage: java -jar XpressionCalc.jar --batch [--threads N] [file | -]");
+        System.exit(2);
+    }
+
+    // Evaluates every line of the input and returns the number of lines that failed. Both writers are flushed
+    // before returning
+    public long run(BufferedReader in, Writer out, Writer err) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "batch-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayDeque<Future<String[]>> pending = new ArrayDeque<>();
+        long failures = 0;
+        long lineNumber = 1;
+        try {
+            String[] chunk = readChunk(in);
+            while (chunk != null) {
+                if (pending.size() == workers * CHUNKS_PER_WORKER) {
+                    String[] results = await(pending.poll());
+                    failures += write(results, lineNumber, out, err);
+                    lineNumber += results.length / 2;
+                }
+                String[] lines = chunk;
+                pending.add(pool.submit(() -> evaluate(lines)));
+                chunk = readChunk(in);
+            }
+            while (!pending.isEmpty()) {
+                String[] results = await(pending.poll());
+                failures += write(results, lineNumber, out, err);
+                lineNumber += results.length / 2;
+            }
+        } finally {
+            pool.shutdownNow();
+            out.flush();
+            err.flush();
+        }
+        return failures;
+    }
+
+    private static String[] readChunk(BufferedReader in) throws IOException {
+        String[] lines = new String[CHUNK_SIZE];
+        int count = 0;
+        String line;
+        while (count < CHUNK_SIZE && (line = in.readLine()) != null) {
+            lines[count++] = line;
+        }
+        if (count == 0) {
+            return null;
+        }
+        return count == CHUNK_SIZE ? lines : Arrays.copyOf(lines, count);
+    }
+
+    // Results come back as pairs: the text to print, then the error message or null
+    private String[] evaluate(String[] lines) {
+        String[] results = new String[lines.length * 2];
+        for (int i = 0; i < lines.length; i++) {
+            try {
+                results[2 * i] = Calculator.formatResult(parser.parseExpression(lines[i]));
+            } catch (IllegalArgumentException e) {
+                results[2 * i] = "SYNTAX ERROR";
+                results[2 * i + 1] = e.getMessage() == null ? "Syntax error" : e.getMessage();
+            } catch (ArithmeticException e) {
+                results[2 * i] = "ARITHMETIC ERROR";
+                results[2 * i + 1] = e.getMessage();
+            } catch (EmptyStackException e) {
+                results[2 * i] = "";
+            }
+        }
+        return results;
+    }
+
+    private static long write(String[] results, long firstLine, Writer out, Writer err) throws IOException {
+        long failures = 0;
+        for (int i = 0; i < results.length; i += 2) {
+            out.write(results[i]);
+            out.write('\n');
+            if (results[i + 1] != null) {
+                err.write("line " + (firstLine + i / 2) + ": " + results[i + 1] + '\n');
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    private static String[] await(Future<String[]> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for results", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -1,21 +1,32 @@
 package main.ui;
 
+import main.model.ExpressionCache;
+import main.model.IncrementalExpression;
 import main.model.MathParser;
+import main.model.ResultFormatter;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.EmptyStackException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.concurrent.ExecutionException;
 
 
 public class Calculator extends JFrame {
+    // Longest expression the calculator accepts, far more than can be typed with the buttons but small enough that
+    // a pasted expression is evaluated in well under a frame
+    static final int TOKEN_BUDGET = 100_000;
+
+    private final transient MathParser parser = new MathParser(new ExpressionCache(256), true, TOKEN_BUDGET);
+    private final transient IncrementalExpression input = new IncrementalExpression(); // Same text as the display, for the preview
     private JTextField displayField;
+    private JLabel previewLabel;
     private JPanel buttonPanel;
     private boolean calculationPerformed; // Flag to indicate if calculation was performed
+    private transient SwingWorker<String, Void> calculation; // Calculation running in the background, if any
 
     public Calculator() {
         setIconImage(loadIconImage()); // Set custom icon
@@ -45,6 +56,15 @@ public class Calculator extends JFrame {
         displayField.setBackground(Color.BLACK);
         displayField.setForeground(Color.WHITE);
         displayField.setBorder(new EmptyBorder(10, 10, 10, 10)); // Set padding around the display field
+
+        // Result of the expression typed so far, shown under it in smaller grey text
+        previewLabel = new JLabel(" ");
+        previewLabel.setHorizontalAlignment(JLabel.CENTER);
+        previewLabel.setFont(new Font("Lucida Sans", Font.PLAIN, 14));
+        previewLabel.setOpaque(true);
+        previewLabel.setBackground(Color.BLACK);
+        previewLabel.setForeground(Color.GRAY);
+        previewLabel.setBorder(new EmptyBorder(0, 10, 5, 10));
     }
 
     private void initButtonPanel() {
@@ -138,23 +158,16 @@ public class Calculator extends JFrame {
     }
 
     private void buttonClicked(String buttonText) {
+        // Any button makes a calculation still in progress stale, including "=" which starts a new one
+        cancelCalculation();
+
         // Reset the display field if it shows an error message
         if (displayField.getText().equals("SYNTAX ERROR") || displayField.getText().equals("ARITHMETIC ERROR")) {
-            displayField.setText("");
+            setDisplay("");
         }
 
         switch (buttonText) {
-            case "=" -> {
-                try {
-                    performCalculation();
-                } catch (IllegalArgumentException e) {
-                    displayField.setText("SYNTAX ERROR");
-                } catch (ArithmeticException e) {
-                    displayField.setText("ARITHMETIC ERROR");
-                } catch (EmptyStackException ignored) {
-
-                }
-            }
+            case "=" -> performCalculation();
             case "CE" -> {
                 resetDisplayField();
                 handleDelete();
@@ -165,31 +178,65 @@ public class Calculator extends JFrame {
                 handleInput(buttonText);
             }
         }
+        updatePreview();
     }
 
     private void resetDisplayField() {
         if (calculationPerformed || displayField.getText().equals("SYNTAX ERROR") ||
                 displayField.getText().equals("ARITHMETIC ERROR")) {
-            displayField.setText("");
+            setDisplay("");
         }
         calculationPerformed = false;
     }
 
+    // Parses and evaluates on a background thread so a long expression does not block painting and input. The
+    // result is only shown if no other button was pressed in the meantime. The evaluation itself cannot be
+    // interrupted: a stale one runs to the end and its result is thrown away, which TOKEN_BUDGET keeps short
     private void performCalculation() {
         String userInput = displayField.getText();
-        double result = new MathParser().parseExpression(userInput);
+        calculation = new SwingWorker<>() {
+            @Override
+            protected String doInBackground() {
+                return formatResult(parser.parseExpression(userInput));
+            }
 
-        BigDecimal bd = new BigDecimal(Double.toString(result));
-        bd = bd.setScale(12, RoundingMode.HALF_UP);
-        double roundedResult = bd.doubleValue();
+            @Override
+            protected void done() {
+                if (isCancelled() || calculation != this) {
+                    return;
+                }
+                calculation = null;
+                try {
+                    setDisplay(get());
+                    calculationPerformed = true;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IllegalArgumentException) {
+                        setDisplay("SYNTAX ERROR");
+                    } else if (e.getCause() instanceof ArithmeticException) {
+                        setDisplay("ARITHMETIC ERROR");
+                    } else if (!(e.getCause() instanceof EmptyStackException)) {
+                        throw new IllegalStateException(e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                updatePreview();
+            }
+        };
+        calculation.execute();
+    }
 
-        // Check if the result is an integer
-        if (roundedResult == (int) roundedResult) {
-            displayField.setText(String.valueOf((int) roundedResult));
-        } else {
-            displayField.setText(String.valueOf(roundedResult));
+    private void cancelCalculation() {
+        if (calculation != null) {
+            calculation.cancel(false); // only discards the result, see performCalculation
+            calculation = null;
         }
-        calculationPerformed = true;
+    }
+
+    // Rounds the result to 12 decimal places and drops the fraction of whole numbers. Shared with the headless
+    // BatchRunner so both print results the same way
+    static String formatResult(double result) {
+        return ResultFormatter.format(result);
     }
 
     private void handleDelete() {
@@ -197,24 +244,52 @@ public class Calculator extends JFrame {
         if (currentText.endsWith("ln")) {
             // Remove the last two characters ("ln")
             displayField.setText(currentText.substring(0, currentText.length() - 2));
+            input.deleteLast(2);
         } else if (currentText.endsWith("log")) {
             // Remove the last three characters ("log")
             displayField.setText(currentText.substring(0, currentText.length() - 3));
+            input.deleteLast(3);
         } else if (!currentText.isEmpty()) {
             // Remove the last character
             displayField.setText(currentText.substring(0, currentText.length() - 1));
+            input.deleteLast(1);
         }
     }
 
     private void handleInput(String buttonText) {
         displayField.setText(displayField.getText() + buttonText);
+        input.append(buttonText);
+    }
+
+    // Replaces the whole display, e.g. with a result or an error message
+    private void setDisplay(String text) {
+        displayField.setText(text);
+        input.clear();
+        input.append(text);
+    }
+
+    // Shows the result of what has been typed so far, unless it is already on the display
+    private void updatePreview() {
+        String preview = " ";
+        OptionalDouble result = input.preview();
+        if (result.isPresent() && !calculationPerformed) {
+            try {
+                preview = "= " + formatResult(result.getAsDouble());
+            } catch (NumberFormatException ignored) {
+                // infinite or NaN results are only reported when "=" is pressed
+            }
+        }
+        previewLabel.setText(preview);
     }
 
     private void layoutComponents() {
         JPanel mainPanel = new JPanel(new BorderLayout(0, 0)); // Main panel with BorderLayout
         mainPanel.setBorder(new EmptyBorder(0, 0, 0, 0)); // Remove padding
 
-        mainPanel.add(displayField, BorderLayout.NORTH);
+        JPanel displayPanel = new JPanel(new BorderLayout(0, 0));
+        displayPanel.add(displayField, BorderLayout.CENTER);
+        displayPanel.add(previewLabel, BorderLayout.SOUTH);
+        mainPanel.add(displayPanel, BorderLayout.NORTH);
         mainPanel.add(buttonPanel, BorderLayout.CENTER);
 
         setContentPane(mainPanel); // Set the main panel as the content pane
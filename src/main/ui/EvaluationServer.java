@@ -0,0 +1,356 @@
+package main.ui;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import main.model.EngineMetrics;
+import main.model.ExpressionCache;
+import main.model.LatencyHistogram;
+import main.model.MathParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EmptyStackException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Serves the engine over HTTP on the loopback interface, one virtual thread per request:
+// - GET /evaluate?expression=... or POST /evaluate with the expression as the body returns the result as text,
+//   or status 422 with SYNTAX ERROR or ARITHMETIC ERROR and the reason
+// - POST /batch with one expression per line returns one result per line, like BatchRunner. With a JSON array of
+//   strings as the body (Content-Type application/json) it returns a JSON array holding a number, null for an
+//   empty expression, or an {"error": ...} object per expression
+// - GET /metrics returns the request count and latency percentiles in microseconds
+// Compiled expressions are cached across requests
+public class EvaluationServer {
+    public static final int DEFAULT_PORT = 8080;
+    private static final int CACHE_SIZE = 4096;
+    private static final int BACKLOG = 4096;
+    private static final int MAX_BODY_SIZE = 1 << 24;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final MathParser parser;
+    private final EngineMetrics metrics;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    public EvaluationServer(int port) throws IOException {
+        this(port, new ExpressionCache(CACHE_SIZE));
+    }
+
+    public EvaluationServer(int port, ExpressionCache cache) throws IOException {
+        metrics = new EngineMetrics(cache);
+        parser = new MathParser(cache, true, Integer.MAX_VALUE, metrics);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/evaluate", exchange -> handle(exchange, this::evaluate));
+        server.createContext("/batch", exchange -> handle(exchange, this::batch));
+        server.createContext("/metrics", exchange -> handle(exchange, this::metrics));
+    }
+
+    // Usage: --serve [port]
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        EvaluationServer server = new EvaluationServer(port);
+        server.getMetrics().register("server");
+        server.start();
+        System.err.println("Listening on http://localhost:" + server.getPort());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.close();
+    }
+
+    // The bound port, which differs from the requested one when 0 was asked for
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    // Engine counters for every expression evaluated by this server, also published over JMX by main
+    public EngineMetrics getMetrics() {
+        return metrics;
+    }
+
+    private interface Handler {
+        Response apply(HttpExchange exchange) throws IOException;
+    }
+
+    private record Response(int status, String contentType, String body) {
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        long start = System.nanoTime();
+        try (exchange) {
+            Response response;
+            try {
+                response = handler.apply(exchange);
+            } catch (IllegalArgumentException e) {
+                response = new Response(400, "text/plain", e.getMessage() + "\n");
+            }
+            byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", response.contentType() + "; charset=utf-8");
+            exchange.sendResponseHeaders(response.status(), body.length == 0 ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            latencies.record(System.nanoTime() - start);
+        }
+    }
+
+    private Response evaluate(HttpExchange exchange) throws IOException {
+        String expression;
+        switch (exchange.getRequestMethod()) {
+            case "GET" -> {
+                expression = queryParameter(exchange.getRequestURI(), "expression");
+                if (expression == null) {
+                    return new Response(400, "text/plain", "Missing expression parameter\n");
+                }
+            }
+            case "POST" -> expression = readBody(exchange).strip();
+            default -> {
+                return new Response(405, "text/plain", "Use GET or POST\n");
+            }
+        }
+        try {
+            return new Response(200, "text/plain", evaluate(expression) + "\n");
+        } catch (IllegalArgumentException e) {
+            return new Response(422, "text/plain", "SYNTAX ERROR: " + e.getMessage() + "\n");
+        } catch (ArithmeticException e) {
+            return new Response(422, "text/plain", "ARITHMETIC ERROR: " + e.getMessage() + "\n");
+        }
+    }
+
+    private Response batch(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            return new Response(405, "text/plain", "Use POST\n");
+        }
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        String body = readBody(exchange);
+
+        if (contentType != null && contentType.startsWith("application/json")) {
+            List<String> expressions = JsonStrings.parseArray(body);
+            StringBuilder json = new StringBuilder("[");
+            for (int i = 0; i < expressions.size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                try {
+                    String result = evaluate(expressions.get(i));
+                    json.append(result.isEmpty() ? "null" : result);
+                } catch (IllegalArgumentException | ArithmeticException e) {
+                    String kind = e instanceof ArithmeticException ? "ARITHMETIC ERROR" : "SYNTAX ERROR";
+                    json.append("{\"error\":");
+                    JsonStrings.append(json, kind + ": " + e.getMessage());
+                    json.append('}');
+                }
+            }
+            return new Response(200, "application/json", json.append("]\n").toString());
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (String line : body.split("\n", -1)) {
+            if (line.endsWith("\r")) {
+                line = line.substring(0, line.length() - 1);
+            }
+            try {
+                text.append(evaluate(line));
+            } catch (IllegalArgumentException e) {
+                text.append("SYNTAX ERROR");
+            } catch (ArithmeticException e) {
+                text.append("ARITHMETIC ERROR");
+            }
+            text.append('\n');
+        }
+        // a trailing newline ends the last line rather than starting an empty one
+        if (body.endsWith("\n")) {
+            text.setLength(text.length() - 1);
+        }
+        return new Response(200, "text/plain", text.toString());
+    }
+
+    private Response metrics(HttpExchange exchange) {
+        String body = "requests " + latencies.getCount() + "\n"
+                + "mean_us " + Math.round(latencies.getMean() / 1000) + "\n"
+                + "p50_us " + latencies.getPercentile(50) / 1000 + "\n"
+                + "p90_us " + latencies.getPercentile(90) / 1000 + "\n"
+                + "p99_us " + latencies.getPercentile(99) / 1000 + "\n"
+                + "max_us " + latencies.getPercentile(100) / 1000 + "\n";
+        return new Response(200, "text/plain", body);
+    }
+
+    // An empty expression gives an empty result, as it leaves the calculator display unchanged. A result that is
+    // NaN or infinite, such as that of √(0-1), has no decimal to show and is reported as an arithmetic error
+    private String evaluate(String expression) {
+        double result;
+        try {
+            result = parser.parseExpression(expression);
+        } catch (EmptyStackException e) {
+            return "";
+        }
+        if (!Double.isFinite(result)) {
+            throw new ArithmeticException("Result is not a finite number");
+        }
+        return Calculator.formatResult(result);
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (body.size() + read > MAX_BODY_SIZE) {
+                    throw new IllegalArgumentException("Request body larger than " + MAX_BODY_SIZE + " bytes");
+                }
+                body.write(buffer, 0, read);
+            }
+            return body.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String queryParameter(URI uri, String name) {
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String key = equals < 0 ? parameter : parameter.substring(0, equals);
+            if (key.equals(name)) {
+                if (equals < 0) {
+                    return "";
+                }
+                // only percent escapes are decoded: URLDecoder reads '+' as a space, which would turn 1+2 into "1 2"
+                return URLDecoder.decode(parameter.substring(equals + 1).replace("+", "%2B"), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    // Just enough JSON for batches: reading an array of strings and writing a string
+    static final class JsonStrings {
+        private JsonStrings() {
+        }
+
+        static List<String> parseArray(String json) {
+            List<String> strings = new ArrayList<>();
+            int i = skipWhitespace(json, 0);
+            expect(json, i++, '[');
+            i = skipWhitespace(json, i);
+            if (i < json.length() && json.charAt(i) == ']') {
+                return checkEnd(json, i + 1, strings);
+            }
+            while (true) {
+                expect(json, i, '"');
+                StringBuilder string = new StringBuilder();
+                i = readString(json, i + 1, string);
+                strings.add(string.toString());
+                i = skipWhitespace(json, i);
+                if (i < json.length() && json.charAt(i) == ']') {
+                    return checkEnd(json, i + 1, strings);
+                }
+                expect(json, i, ',');
+                i = skipWhitespace(json, i + 1);
+            }
+        }
+
+        // Reads the string starting after its opening quote and returns the index after its closing quote
+        private static int readString(String json, int i, StringBuilder string) {
+            while (i < json.length()) {
+                char c = json.charAt(i++);
+                if (c == '"') {
+                    return i;
+                }
+                if (c != '\\') {
+                    string.append(c);
+                    continue;
+                }
+                if (i == json.length()) {
+                    break;
+                }
+                char escaped = json.charAt(i++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> string.append(escaped);
+                    case 'b' -> string.append('\b');
+                    case 'f' -> string.append('\f');
+                    case 'n' -> string.append('\n');
+                    case 'r' -> string.append('\r');
+                    case 't' -> string.append('\t');
+                    case 'u' -> {
+                        if (i + 4 > json.length()) {
+                            throw new IllegalArgumentException("Invalid JSON escape at index " + (i - 2));
+                        }
+                        try {
+                            string.append((char) Integer.parseInt(json.substring(i, i + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Invalid JSON escape at index " + (i - 2));
+                        }
+                        i += 4;
+                    }
+                    default -> throw new IllegalArgumentException("Invalid JSON escape at index " + (i - 2));
+                }
+            }
+            throw new IllegalArgumentException("Unterminated JSON string");
+        }
+
+        static void append(StringBuilder json, String string) {
+            json.append('"');
+            for (int i = 0; i < string.length(); i++) {
+                char c = string.charAt(i);
+                switch (c) {
+                    case '"' -> json.append("\\\"");
+                    case '\\' -> json.append("\\\\");
+                    case '\n' -> json.append("\\n");
+                    case '\r' -> json.append("\\r");
+                    case '\t' -> json.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            json.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            json.append(c);
+                        }
+                    }
+                }
+            }
+            json.append('"');
+        }
+
+        private static int skipWhitespace(String json, int i) {
+            while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        private static void expect(String json, int i, char expected) {
+            if (i >= json.length() || json.charAt(i) != expected) {
+                throw new IllegalArgumentException("Expected '" + expected + "' at index " + i + " of JSON body");
+            }
+        }
+
+        private static List<String> checkEnd(String json, int i, List<String> strings) {
+            if (skipWhitespace(json, i) != json.length()) {
+                throw new IllegalArgumentException("Unexpected content after JSON array at index " + i);
+            }
+            return strings;
+        }
+    }
+}
@@ -1,7 +1,18 @@
 package main.ui;
 
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+
 public class Main {
-    public static void main(String[] args) {
-        new Calculator();
+    public static void main(String[] args) throws IOException, InterruptedException, InvocationTargetException {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchRunner.main(args);
+        } else if (args.length > 0 && args[0].equals("--serve")) {
+            EvaluationServer.main(args);
+        } else if (args.length > 0 && args[0].equals("--startup")) {
+            StartupProbe.main(args);
+        } else {
+            new Calculator();
+        }
     }
 }
@@ -0,0 +1,53 @@
+package main.ui;
+
+import main.model.MathParser;
+
+import java.awt.GraphicsEnvironment;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.lang.reflect.InvocationTargetException;
+import javax.swing.SwingUtilities;
+
+// Runs the application as far as a startup milestone and exits, so the time to reach it can be measured from
+// outside the process and the classes it loads can be recorded in an AppCDS archive:
+// - evaluation: compiles and evaluates one expression and prints the result
+// - window: also opens the calculator and exits once its window is shown, which needs a display
+final class StartupProbe {
+    private static final String EXPRESSION = "(5-2)4÷2+7÷(3+1)×(6÷2)";
+
+    private StartupProbe() {
+    }
+
+    // Usage: --startup [evaluation | window]
+    static void main(String[] args) throws InterruptedException, InvocationTargetException {
+        String milestone = args.length > 1 ? args[1] : "evaluation";
+        switch (milestone) {
+            case "evaluation" -> {
+                System.out.println(Calculator.formatResult(new MathParser().parseExpression(EXPRESSION)));
+                System.exit(0);
+            }
+            case "window" -> {
+                if (GraphicsEnvironment.isHeadless()) {
+                    System.err.println("--startup window needs a display");
+                    System.exit(2);
+                }
+                SwingUtilities.invokeAndWait(() -> {
+                    Calculator calculator = new Calculator();
+                    // the window is shown by the constructor, but the event is not dispatched before this returns
+                    calculator.addWindowListener(new WindowAdapter() {
+                        @Override
+                        public void windowOpened(WindowEvent event) {
+                            System.out.println(Calculator.formatResult(new MathParser().parseExpression(EXPRESSION)));
+                            System.exit(0);
+                        }
+                    });
+                });
+            }
+            default -> {
+                System.err.println("Unknown startup milestone: " + milestone);
+                System.err.println("Usage: java -jar XpressionCalc.jar --startup [evaluation | window]");
+                System.exit(2);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package test.model;
+
+import main.model.BatchEvaluator;
+import main.model.CompiledExpression;
+import main.model.MathParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BatchEvaluatorTest {
+
+    private final MathParser parser = new MathParser();
+
+    private static double[][] randomColumns(int columnCount, int rows, long seed) {
+        Random random = new Random(seed);
+        double[][] columns = new double[columnCount][rows];
+        for (double[] column : columns) {
+            for (int row = 0; row < rows; row++) {
+                column[row] = 0.5 + random.nextDouble() * 100;
+            }
+        }
+        return columns;
+    }
+
+    private static double[] evaluateRows(CompiledExpression expression, double[][] columns, int rows) {
+        double[] expected = new double[rows];
+        double[] variables = new double[columns.length];
+        for (int row = 0; row < rows; row++) {
+            for (int slot = 0; slot < columns.length; slot++) {
+                variables[slot] = columns[slot][row];
+            }
+            expected[row] = expression.evaluate(variables);
+        }
+        return expected;
+    }
+
+    @Test
+    void testMatchesRowAtATimeEvaluation() {
+        String[] formulas = {"x+y", "(x+y)×(x-y)÷(1+x×x)", "x^2-√(y)", "ln(x)+log(y)×e", "–x×2π+3", "√(x^2+y^2)", "42"};
+        double[][] columns = randomColumns(2, 5000, 1);
+        for (String formula : formulas) {
+            CompiledExpression expression = parser.compile(formula, "x", "y");
+            double[] out = new double[5000];
+            new BatchEvaluator(256).evaluate(expression, columns, out);
+            assertArrayEquals(evaluateRows(expression, columns, 5000), out, formula);
+        }
+    }
+
+    @Test
+    void testPartialBlocksAndRanges() {
+        CompiledExpression expression = parser.compile("a×b-c÷2", "a", "b", "c");
+        double[][] columns = randomColumns(3, 1001, 2);
+        double[] expected = evaluateRows(expression, columns, 1001);
+
+        double[] out = new double[1001];
+        new BatchEvaluator(64).evaluate(expression, columns, out, 0, 500);
+        new BatchEvaluator(64).evaluate(expression, columns, out, 500, 1001);
+        assertArrayEquals(expected, out);
+    }
+
+    @Test
+    void testParallelMatchesSequential() {
+        CompiledExpression expression = parser.compile("(x+y)×(x-y)÷(1+x×x)+ln(y)", "x", "y");
+        double[][] columns = randomColumns(2, 100_003, 3);
+        double[] expected = new double[100_003];
+        new BatchEvaluator().evaluate(expression, columns, expected);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int chunkSize : new int[]{1, 100, 4096, 1_000_000}) {
+                double[] out = new double[100_003];
+                new BatchEvaluator(256, pool, chunkSize).evaluateParallel(expression, columns, out);
+                assertArrayEquals(expected, out, "chunk size " + chunkSize);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testParallelArithmeticErrors() {
+        double[][] columns = randomColumns(1, 50_000, 4);
+        columns[0][45_678] = 0;
+        BatchEvaluator evaluator = new BatchEvaluator(128, ForkJoinPool.commonPool(), 1000);
+        assertThrows(ArithmeticException.class, () -> evaluator.evaluateParallel(parser.compile("1÷x", "x"), columns, new double[50_000]));
+    }
+
+    @Test
+    void testArithmeticErrors() {
+        double[][] columns = {{1, 2, 0, 4}};
+        double[] out = new double[4];
+        BatchEvaluator evaluator = new BatchEvaluator();
+        assertThrows(ArithmeticException.class, () -> evaluator.evaluate(parser.compile("1÷x", "x"), columns, out));
+        assertThrows(ArithmeticException.class, () -> evaluator.evaluate(parser.compile("ln(x)", "x"), columns, out));
+        evaluator.evaluate(parser.compile("x÷(x+1)", "x"), columns, out);
+        assertEquals(0.0, out[2]);
+    }
+
+    @Test
+    void testVectorKernelsMatchScalarKernels() {
+        BatchEvaluator vector = new BatchEvaluator(64, ForkJoinPool.commonPool(), BatchEvaluator.DEFAULT_CHUNK_SIZE, true);
+        BatchEvaluator scalar = new BatchEvaluator(64, ForkJoinPool.commonPool(), BatchEvaluator.DEFAULT_CHUNK_SIZE, false);
+        assertEquals(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(), vector.isVectorized());
+        assertFalse(scalar.isVectorized());
+
+        String[] formulas = {"x+y-x×y", "(x+y)÷(x-y)", "√(x)-–y", "x^y+ln(x)+log(y)", "–(x÷y)×√(y-x)"};
+        double[] specials = {0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, -1, Double.MIN_VALUE};
+        Random random = new Random(5);
+        // every tail length after the last full vector, and several blocks
+        for (int rows : new int[]{0, 1, 3, 7, 8, 9, 15, 17, 63, 64, 65, 200}) {
+            double[][] columns = randomColumns(2, rows, rows);
+            for (int row = 0; row < rows; row += 3) {
+                columns[random.nextInt(2)][row] = specials[random.nextInt(specials.length)];
+            }
+            for (String formula : formulas) {
+                CompiledExpression expression = parser.compile(formula, "x", "y");
+                assertArrayEquals(outcome(scalar, expression, columns, rows), outcome(vector, expression, columns, rows), formula + " over " + rows + " rows");
+            }
+        }
+    }
+
+    // Bits of every result, with all NaNs alike as the hardware may give them a different sign, or the message of the
+    // exception
+    private static Object[] outcome(BatchEvaluator evaluator, CompiledExpression expression, double[][] columns, int rows) {
+        double[] out = new double[rows];
+        try {
+            evaluator.evaluate(expression, columns, out);
+        } catch (ArithmeticException e) {
+            return new Object[]{e.getMessage()};
+        }
+        return Arrays.stream(out).mapToObj(Double::doubleToLongBits).toArray();
+    }
+
+    @Test
+    void testVectorDomainChecks() {
+        BatchEvaluator evaluator = new BatchEvaluator();
+        // zeros and negative values in the vector part and in the tail of a block
+        for (int position : new int[]{0, 5, 31, 32, 33, 99}) {
+            double[][] columns = randomColumns(1, 100, position);
+            columns[0][position] = -0.0;
+            assertThrows(ArithmeticException.class, () -> evaluator.evaluate(parser.compile("1÷x", "x"), columns, new double[100]));
+            columns[0][position] = -2;
+            assertThrows(ArithmeticException.class, () -> evaluator.evaluate(parser.compile("ln(x)", "x"), columns, new double[100]));
+            assertThrows(ArithmeticException.class, () -> evaluator.evaluate(parser.compile("log(x)", "x"), columns, new double[100]));
+        }
+    }
+
+    @Test
+    void testInvalidArguments() {
+        BatchEvaluator evaluator = new BatchEvaluator();
+        CompiledExpression expression = parser.compile("x+y", "x", "y");
+        assertThrows(IllegalArgumentException.class, () -> evaluator.evaluate(expression, new double[][]{{1}}, new double[1]));
+        assertThrows(IllegalArgumentException.class, () -> evaluator.evaluate(expression, new double[][]{{1}, {1}}, new double[2]));
+        assertThrows(IllegalArgumentException.class, () -> new BatchEvaluator(0));
+    }
+}
@@ -0,0 +1,82 @@
+package test.model;
+
+import main.model.BytecodeCompiler;
+import main.model.CompiledExpression;
+import main.model.ExpressionEvaluator;
+import main.model.MathParser;
+import main.model.TieredExpression;
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static test.model.RandomExpressions.assertSameOutcomes;
+
+class BytecodeCompilerTest {
+
+    private static final double[] VALUES = {0.0, -0.0, 1.0, -1.0, 2.5, 100, Double.NaN, Double.POSITIVE_INFINITY};
+
+    private final MathParser parser = new MathParser();
+
+    @Test
+    void testGeneratedCodeMatchesInterpreter() {
+        RandomExpressions expressions = new RandomExpressions(new Random(11), parser, RandomExpressions.ATOMS, 16, "x", "y");
+        for (int compared = 0; compared < 2_000; compared++) {
+            CompiledExpression interpreted = expressions.next();
+            ExpressionEvaluator generated = BytecodeCompiler.compile(interpreted);
+            assertSameOutcomes(interpreted, generated, VALUES, expressions.text());
+        }
+    }
+
+    @Test
+    void testErrors() {
+        ExpressionEvaluator evaluator = BytecodeCompiler.compile(parser.compile("1÷x+ln(y)", "x", "y"));
+        assertThrows(ArithmeticException.class, () -> evaluator.evaluate(new double[]{0, 1}));
+        assertThrows(ArithmeticException.class, () -> evaluator.evaluate(new double[]{1, 0}));
+        assertThrows(IllegalArgumentException.class, () -> evaluator.evaluate(new double[]{1}));
+        assertEquals(1.0, evaluator.evaluate(new double[]{1, 1}));
+    }
+
+    @Test
+    void testGeneratesHiddenClasses() {
+        ExpressionEvaluator evaluator = BytecodeCompiler.compile(parser.compile("x×x+1", "x"));
+        assertTrue(evaluator.getClass().isHidden());
+        assertEquals(10.0, evaluator.evaluate(new double[]{3}));
+    }
+
+    @Test
+    void testLargeExpressionsStayInterpreted() {
+        String expression = "x" + "+x×2".repeat(5_000);
+        CompiledExpression compiled = parser.compile(expression, "x");
+        assertSame(compiled, BytecodeCompiler.compile(compiled));
+    }
+
+    @Test
+    void testTieredCompilation() {
+        TieredExpression expression = new TieredExpression(parser.compile("x^2+y", "x", "y"), 100);
+        double[] variables = {3, 1};
+        for (int i = 0; i < 100; i++) {
+            assertEquals(10.0, expression.evaluate(variables));
+        }
+        assertFalse(expression.isCompiled());
+        assertEquals(10.0, expression.evaluate(variables));
+        assertTrue(expression.isCompiled());
+        assertEquals(10.0, expression.evaluate(variables));
+    }
+
+    @Test
+    void testGeneratedClassesCanBeUnloaded() throws InterruptedException {
+        WeakReference<Class<?>> generatedClass = new WeakReference<>(BytecodeCompiler.compile(parser.compile("x+2", "x")).getClass());
+        for (int i = 0; i < 50 && generatedClass.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(generatedClass.get());
+    }
+}
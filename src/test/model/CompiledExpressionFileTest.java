@@ -0,0 +1,195 @@
+package test.model;
+
+import main.model.CompiledExpression;
+import main.model.CompiledExpressionFile;
+import main.model.ExpressionCache;
+import main.model.MathParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CompiledExpressionFileTest {
+
+    @TempDir
+    Path directory;
+
+    private final MathParser parser = new MathParser(null);
+
+    private Map<String, CompiledExpression> sample() {
+        Map<String, CompiledExpression> expressions = new LinkedHashMap<>();
+        put(expressions, "1+2×3");
+        put(expressions, "0.1+0.2");
+        put(expressions, "2π(1)");
+        put(expressions, "√(x^2+y^2)", "x", "y");
+        put(expressions, "–x÷ln(y)", "x", "y");
+        // the same formula over the variables in another order is another program
+        put(expressions, "–x÷ln(y)", "y", "x");
+        put(expressions, "()");
+        return expressions;
+    }
+
+    private void put(Map<String, CompiledExpression> expressions, String expression, String... variableNames) {
+        expressions.put(MathParser.cacheKey(expression, variableNames), parser.compile(expression, variableNames));
+    }
+
+    private static Map<String, CompiledExpression> read(Path file) throws IOException {
+        return CompiledExpressionFile.read(file, true, Integer.MAX_VALUE);
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        Path file = directory.resolve("expressions.xpce");
+        Map<String, CompiledExpression> written = sample();
+        parser.save(file, written);
+        Map<String, CompiledExpression> read = read(file);
+
+        assertEquals(List.copyOf(written.keySet()), List.copyOf(read.keySet()));
+        double[] variables = {3, 4};
+        for (String key : written.keySet()) {
+            CompiledExpression original = written.get(key);
+            CompiledExpression loaded = read.get(key);
+            assertEquals(original.getVariableNames(), loaded.getVariableNames());
+            assertEquals(original.getInstructionCount(), loaded.getInstructionCount());
+            assertEquals(original.getMaxStackDepth(), loaded.getMaxStackDepth());
+            if (original.getInstructionCount() > 0) {
+                double[] values = Arrays.copyOf(variables, original.getVariableNames().size());
+                assertEquals(Double.doubleToRawLongBits(original.evaluate(values)),
+                        Double.doubleToRawLongBits(loaded.evaluate(values)), key);
+            }
+        }
+    }
+
+    @Test
+    void testEmptyFile() throws IOException {
+        Path file = directory.resolve("empty.xpce");
+        parser.save(file, Map.of());
+        assertEquals(Map.of(), read(file));
+    }
+
+    @Test
+    void testPreloadedExpressionsAreCacheHits() throws IOException {
+        Path file = directory.resolve("expressions.xpce");
+        parser.save(file, sample());
+
+        ExpressionCache cache = new ExpressionCache(64);
+        MathParser warm = new MathParser(cache);
+        warm.preload(file);
+        assertEquals(sample().size(), cache.size());
+
+        warm.compile("1+2×3");
+        warm.compile("√(x^2+y^2)", "x", "y");
+        assertEquals(7, warm.parseExpression("1+2×3"));
+        assertEquals(-3 / Math.log(4), warm.compile("–x÷ln(y)", "x", "y").evaluate(new double[]{3, 4}));
+        assertEquals(-4 / Math.log(3), warm.compile("–x÷ln(y)", "y", "x").evaluate(new double[]{3, 4}));
+        assertEquals(5, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+
+        // different variables make a different program
+        warm.compile("√(x^2+y^2)", "y", "x");
+        assertEquals(1, cache.getMissCount());
+
+        assertThrows(IllegalStateException.class, () -> new MathParser(null).preload(file));
+    }
+
+    @Test
+    void testRejectsOtherParserSettings() throws IOException {
+        Path file = directory.resolve("expressions.xpce");
+        new MathParser(null, true, 100).save(file, Map.of());
+        assertThrows(IOException.class, () -> new MathParser(new ExpressionCache(16), false, 100).preload(file));
+        assertThrows(IOException.class, () -> new MathParser(new ExpressionCache(16), true, 99).preload(file));
+        // a larger budget compiles everything a smaller one does
+        new MathParser(new ExpressionCache(16), true, 101).preload(file);
+    }
+
+    @Test
+    void testRejectsKeysOfOtherVariables() {
+        Path file = directory.resolve("expressions.xpce");
+        CompiledExpression expression = parser.compile("x+y", "x", "y");
+        assertThrows(IllegalArgumentException.class, () -> parser.save(file, Map.of("x+y", expression)));
+        assertThrows(IllegalArgumentException.class, () -> parser.save(file, Map.of(MathParser.cacheKey("x+y", "y", "x"), expression)));
+    }
+
+    @Test
+    void testRejectsTruncatedFile() throws IOException {
+        Path file = directory.resolve("expressions.xpce");
+        parser.save(file, sample());
+        byte[] bytes = Files.readAllBytes(file);
+        for (int length = 0; length < bytes.length; length++) {
+            Files.write(file, Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class, () -> read(file), "length " + length);
+        }
+    }
+
+    @Test
+    void testRejectsBadHeader() throws IOException {
+        Path file = directory.resolve("expressions.xpce");
+        parser.save(file, sample());
+        byte[] bytes = Files.readAllBytes(file);
+
+        byte[] badMagic = bytes.clone();
+        badMagic[0] = 'Y';
+        Files.write(file, badMagic);
+        assertThrows(IOException.class, () -> read(file));
+
+        byte[] badVersion = bytes.clone();
+        badVersion[5] = 1;
+        Files.write(file, badVersion);
+        assertThrows(IOException.class, () -> read(file));
+
+        byte[] trailing = Arrays.copyOf(bytes, bytes.length + 1);
+        Files.write(file, trailing);
+        assertThrows(IOException.class, () -> read(file));
+    }
+
+    @Test
+    void testRejectsInvalidCode() throws IOException {
+        Path file = directory.resolve("invalid.xpce");
+        // unknown opcode, constant out of range, variable out of range, ADD with one operand
+        int[][] programs = {{11}, {1 << 8}, {1 | 1 << 8}, {0, 2}};
+        for (int[] code : programs) {
+            Files.write(file, encode(code, new double[]{1}, "x"));
+            assertThrows(IOException.class, () -> read(file), Arrays.toString(code));
+        }
+
+        // invalid and duplicate variable names
+        for (String[] variableNames : new String[][]{{"ln"}, {"2x"}, {""}, {"x", "x"}}) {
+            Files.write(file, encode(new int[]{0}, new double[]{1}, variableNames));
+            assertThrows(IOException.class, () -> read(file), Arrays.toString(variableNames));
+        }
+
+        // the same layout with valid code reads back
+        Files.write(file, encode(new int[]{0, 1, 2}, new double[]{1}, "x"));
+        assertEquals(3, read(file).get(MathParser.cacheKey("src", "x")).evaluate(new double[]{2}));
+    }
+
+    // A file holding one expression with the source "src"
+    private static byte[] encode(int[] code, double[] constants, String... variableNames) {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        buffer.putInt(0x58504345).putShort((short) 2).put((byte) 1).putInt(Integer.MAX_VALUE).putInt(1);
+        buffer.putInt(3).put("src".getBytes());
+        buffer.putShort((short) variableNames.length);
+        for (String variableName : variableNames) {
+            buffer.putInt(variableName.length()).put(variableName.getBytes());
+        }
+        buffer.putInt(code.length);
+        for (int instruction : code) {
+            buffer.putInt(instruction);
+        }
+        buffer.putInt(constants.length);
+        for (double constant : constants) {
+            buffer.putDouble(constant);
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+}
@@ -0,0 +1,147 @@
+package test.model;
+
+import main.model.CompiledExpression;
+import main.model.MathParser;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompiledExpressionTest {
+
+    private final MathParser parser = new MathParser();
+
+    @Test
+    void testRepeatedEvaluation() {
+        CompiledExpression expression = parser.compile("–(3+4)×2π+√(log(100))");
+        double expected = parser.parseExpression("–(3+4)×2π+√(log(100))");
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(expected, expression.evaluate());
+        }
+    }
+
+    @Test
+    void testMatchesParseExpression() {
+        String[] expressions = {"3+4×2", "(5-2)4÷2+7÷(3+1)×(6÷2)", "e^π", "–(–3.5-1.2)2.8÷–1.4", "2^3^2", "ln(e)÷log(100)"};
+        for (String expression : expressions) {
+            assertEquals(parser.parseExpression(expression), parser.compile(expression).evaluate());
+        }
+    }
+
+    @Test
+    void testSyntaxErrorsAtCompileTime() {
+        assertThrows(IllegalArgumentException.class, () -> parser.compile("2++3"));
+        assertThrows(IllegalArgumentException.class, () -> parser.compile("×2+3"));
+        assertThrows(IllegalArgumentException.class, () -> parser.compile("√-4"));
+        assertThrows(IllegalArgumentException.class, () -> parser.compile("(2+3"));
+    }
+
+    @Test
+    void testArithmeticErrorsAtEvaluation() {
+        CompiledExpression division = parser.compile("10÷(5-5)");
+        assertThrows(ArithmeticException.class, division::evaluate);
+        CompiledExpression logarithm = parser.compile("ln(1-1)");
+        assertThrows(ArithmeticException.class, logarithm::evaluate);
+    }
+
+    @Test
+    void testConcurrentEvaluation() throws Exception {
+        CompiledExpression expression = parser.compile("(3.5-1.2)2.8÷1.4+6.9÷(2.1+0.7)(5.4÷2.7)");
+        double expected = expression.evaluate();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    for (int j = 0; j < 10_000; j++) {
+                        if (expression.evaluate() != expected) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertEquals(true, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testVariables() {
+        CompiledExpression expression = parser.compile("3×x+2", "x");
+        assertEquals(List.of("x"), expression.getVariableNames());
+        for (int x = -100; x <= 100; x++) {
+            assertEquals(3.0 * x + 2, expression.evaluate(new double[]{x}));
+        }
+    }
+
+    @Test
+    void testVariableSlots() {
+        CompiledExpression expression = parser.compile("rate×(1+growth)^years", "rate", "growth", "years");
+        double[] values = new double[3];
+        values[expression.getSlot("rate")] = 100;
+        values[expression.getSlot("growth")] = 0.5;
+        values[expression.getSlot("years")] = 2;
+        assertEquals(225.0, expression.evaluate(values), 0.000001);
+        assertEquals(-1, expression.getSlot("missing"));
+    }
+
+    @Test
+    void testVariableImplicitMultiplication() {
+        CompiledExpression expression = parser.compile("2x+xy+x(y)+πx+–x√y+ln(x)", "x", "y");
+        double x = 3;
+        double y = 4;
+        double expected = 2 * x + x * y + x * y + Math.PI * x + -x * Math.sqrt(y) + Math.log(x);
+        assertEquals(expected, expression.evaluate(new double[]{x, y}), 0.000001);
+    }
+
+    @Test
+    void testLongestVariableNameWins() {
+        CompiledExpression expression = parser.compile("ab+a", "a", "ab");
+        assertEquals(12.0, expression.evaluate(new double[]{2, 10}));
+    }
+
+    @Test
+    void testInvalidVariables() {
+        assertThrows(IllegalArgumentException.class, () -> parser.compile("x+y", "x"));
+        assertThrows(IllegalArgumentException.class, () -> parser.compile("e+1", "e"));
+        assertThrows(IllegalArgumentException.class, () -> parser.compile("1+2", "x", "x"));
+        assertThrows(IllegalArgumentException.class, () -> parser.compile("1+2", "1x"));
+        assertThrows(IllegalArgumentException.class, () -> parser.compile("x+1", "x").evaluate());
+    }
+
+    @Test
+    void testEvaluationDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        CompiledExpression expression = parser.compile("x×(3.5+y)÷2-√(x)+ln(y)^2+log(x+y)×–(e×π)", "x", "y");
+        double[] variables = {2.5, 7.25};
+        double sum = 0;
+
+        // let the thread local operand stack and the JIT settle before measuring
+        for (int i = 0; i < 200_000; i++) {
+            variables[0] = i + 1;
+            sum += expression.evaluate(variables);
+        }
+
+        long before = threadBean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 1_000_000; i++) {
+            variables[0] = i + 1;
+            sum += expression.evaluate(variables);
+        }
+        long allocated = threadBean.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(sum != 0);
+        assertTrue(allocated < 1024, "Evaluation allocated " + allocated + " bytes");
+    }
+}
@@ -0,0 +1,94 @@
+package test.model;
+
+import main.model.CompiledExpression;
+import main.model.MathParser;
+import main.model.MathTokenizer;
+import main.model.TokenBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Inputs of a million characters, nested as deeply as they can be. Nothing may recurse, and compiling must
+// allocate no more than a fixed number of bytes per input character whatever the shape
+class DeepNestingTest {
+    private static final int LENGTH = 1_000_000;
+    private static final long BYTES_PER_CHARACTER = 160;
+
+    private final MathParser parser = new MathParser();
+
+    private static <T> T assertAllocatesAtMost(long bytes, Supplier<T> action) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        T result = action.get();
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        assertTrue(allocated <= bytes, "allocated " + allocated + " bytes, limit " + bytes);
+        return result;
+    }
+
+    private double compileAndEvaluate(String expression) {
+        CompiledExpression compiled = assertAllocatesAtMost(BYTES_PER_CHARACTER * expression.length(), () -> parser.compile(expression));
+        return compiled.evaluate();
+    }
+
+    @Test
+    void testDeepParentheses() {
+        int depth = LENGTH / 2;
+        String expression = "(".repeat(depth) + "2" + ")".repeat(depth - 1);
+        assertEquals(2.0, compileAndEvaluate(expression + ")"));
+        IllegalArgumentException unclosed = assertThrows(IllegalArgumentException.class, () -> parser.compile(expression));
+        assertTrue(unclosed.getMessage().startsWith("Mismatched parentheses at index 0 "));
+    }
+
+    @Test
+    void testDeepNegation() {
+        int depth = LENGTH / 3;
+        // –(–(–(...2...))) with an odd number of en dashes
+        String expression = "–(".repeat(depth) + "2" + ")".repeat(depth);
+        assertEquals(depth % 2 == 0 ? 2.0 : -2.0, compileAndEvaluate(expression));
+        assertEquals(1, parser.compile(expression).getInstructionCount());
+    }
+
+    @Test
+    void testDeepFunctions() {
+        int depth = LENGTH / 2;
+        String expression = "√(".repeat(depth) + "1" + ")".repeat(depth);
+        assertEquals(1.0, compileAndEvaluate(expression));
+    }
+
+    @Test
+    void testRightNestedOperators() {
+        int depth = LENGTH / 4;
+        // 1+(1+(1+(...))) keeps every addition waiting until the end
+        String expression = "1+(".repeat(depth) + "1" + ")".repeat(depth);
+        assertEquals(depth + 1, compileAndEvaluate(expression));
+        assertEquals(depth + 1, new MathParser(null, false).compile(expression).evaluate());
+    }
+
+    @Test
+    void testLongFlatExpression() {
+        int units = LENGTH / 6;
+        // 1+2×3 - 1+2×3 - ... - 0, every unit after the first adds 5
+        String expression = "1+2×3-".repeat(units) + "0";
+        assertEquals(5.0 * units + 2, compileAndEvaluate(expression));
+    }
+
+    @Test
+    void testTokenizerMemory() {
+        String expression = "–(".repeat(LENGTH / 3) + "2" + ")".repeat(LENGTH / 3);
+        MathTokenizer tokenizer = new MathTokenizer();
+        TokenBuffer tokens = new TokenBuffer(expression.length());
+        // reusing a buffer, tokenizing only needs the stack of open parentheses
+        assertAllocatesAtMost(8L * expression.length(), () -> {
+            tokenizer.tokenize(expression, tokens);
+            return tokens;
+        });
+        assertEquals(2 * (LENGTH / 3) + 1 + LENGTH / 3, tokens.size());
+        // one token per en dash in the list form too
+        assertEquals(tokens.size(), tokenizer.tokenize(expression).size());
+    }
+}
@@ -0,0 +1,113 @@
+package test.model;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import main.model.EngineMetrics;
+import main.model.ExpressionCache;
+import main.model.MathParser;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EmptyStackException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EngineMetricsTest {
+
+    @Test
+    void testCounters() {
+        ExpressionCache cache = new ExpressionCache(16);
+        EngineMetrics metrics = new EngineMetrics(cache, 1);
+        MathParser parser = new MathParser(cache, true, Integer.MAX_VALUE, metrics);
+
+        assertEquals(3.0, parser.parseExpression("1+2"));
+        assertEquals(3.0, parser.parseExpression("1+2"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parseExpression("1+"));
+        assertThrows(ArithmeticException.class, () -> parser.parseExpression("1÷0"));
+        assertThrows(EmptyStackException.class, () -> parser.parseExpression(""));
+
+        assertEquals(5, metrics.getEvaluationCount());
+        assertEquals(1, metrics.getSyntaxErrorCount());
+        assertEquals(1, metrics.getArithmeticErrorCount());
+        assertEquals(1, metrics.getEmptyExpressionCount());
+        assertEquals(1, metrics.getCacheHitCount());
+        assertEquals(4, metrics.getCacheMissCount());
+        assertEquals(5, metrics.getLatencies().getCount());
+        assertTrue(metrics.getLatencyP99Micros() >= metrics.getLatencyP50Micros());
+
+        metrics.reset();
+        assertEquals(0, metrics.getEvaluationCount());
+        assertEquals(0, metrics.getLatencies().getCount());
+
+        // by default only some calls are timed, but all are counted
+        EngineMetrics sampled = new EngineMetrics();
+        MathParser sampledParser = new MathParser(null, true, Integer.MAX_VALUE, sampled);
+        for (int i = 0; i < 10_000; i++) {
+            sampledParser.parseExpression("1");
+        }
+        assertEquals(10_000, sampled.getEvaluationCount());
+        long timed = sampled.getLatencies().getCount();
+        assertTrue(timed > 0 && timed < 1_000, "timed " + timed);
+        assertThrows(IllegalArgumentException.class, () -> new EngineMetrics(null, 0));
+    }
+
+    @Test
+    void testJmx() throws Exception {
+        EngineMetrics metrics = new EngineMetrics();
+        new MathParser(null, true, Integer.MAX_VALUE, metrics).parseExpression("2×3");
+        ObjectName name = metrics.register("test");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1L, server.getAttribute(name, "EvaluationCount"));
+            assertEquals(0L, server.getAttribute(name, "SyntaxErrorCount"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "EvaluationCount"));
+            assertThrows(IllegalStateException.class, () -> metrics.register("test"));
+        } finally {
+            EngineMetrics.unregister(name);
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    @Test
+    void testFlightRecorderEvents() throws IOException {
+        Path file = Files.createTempFile("expression-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String event : List.of("xpressioncalc.Tokenize", "xpressioncalc.Parse", "xpressioncalc.Evaluate")) {
+                recording.enable(event).withoutThreshold();
+            }
+            recording.start();
+            new MathParser().parseExpression("(1+2)×3");
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            RecordedEvent tokenize = find(events, "xpressioncalc.Tokenize");
+            assertEquals(7, tokenize.getInt("expressionLength"));
+            assertEquals(7, tokenize.getInt("tokenCount"));
+            RecordedEvent parse = find(events, "xpressioncalc.Parse");
+            assertEquals(7, parse.getInt("tokenCount"));
+            assertEquals(1, parse.getInt("instructionCount"));
+            RecordedEvent evaluate = find(events, "xpressioncalc.Evaluate");
+            assertEquals(7, evaluate.getInt("expressionLength"));
+            assertEquals(1, evaluate.getInt("instructionCount"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).findFirst()
+                .orElseThrow(() -> new AssertionError("No " + name + " event in " + events));
+    }
+}
@@ -0,0 +1,117 @@
+package test.model;
+
+import main.model.CompiledExpression;
+import main.model.ExpressionCache;
+import main.model.MathParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpressionCacheTest {
+
+    @Test
+    void testCompilesOncePerFormula() {
+        ExpressionCache cache = new ExpressionCache(100);
+        MathParser parser = new MathParser(cache);
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals(7.0, parser.parseExpression("3+4"));
+            assertEquals(20.0, parser.parseExpression("5×4"));
+        }
+
+        assertEquals(2, cache.getMissCount());
+        assertEquals(98, cache.getHitCount());
+        assertEquals(2, cache.size());
+        assertSame(parser.compile("3+4"), parser.compile("3+4"));
+    }
+
+    @Test
+    void testVariableNamesArePartOfTheKey() {
+        MathParser parser = new MathParser(new ExpressionCache(100));
+        CompiledExpression withX = parser.compile("x+y", "x", "y");
+        CompiledExpression withY = parser.compile("x+y", "y", "x");
+        assertEquals(0, withX.getSlot("x"));
+        assertEquals(1, withY.getSlot("x"));
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        ExpressionCache cache = new ExpressionCache(1);
+        MathParser parser = new MathParser(cache);
+
+        CompiledExpression first = parser.compile("1+1");
+        parser.compile("2+2");
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        // the first expression was evicted, so it is compiled again
+        assertTrue(first != parser.compile("1+1"));
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    void testStaysWithinMaximumSize() {
+        ExpressionCache cache = new ExpressionCache(64);
+        MathParser parser = new MathParser(cache);
+        for (int i = 0; i < 1000; i++) {
+            parser.compile(i + "+1");
+        }
+        assertTrue(cache.size() <= 64);
+        assertEquals(1000 - cache.size(), cache.getEvictionCount());
+    }
+
+    @Test
+    void testFailedCompilationIsNotCached() {
+        ExpressionCache cache = new ExpressionCache(10);
+        MathParser parser = new MathParser(cache);
+        assertThrows(IllegalArgumentException.class, () -> parser.compile("2++3"));
+        assertThrows(IllegalArgumentException.class, () -> parser.compile("2++3"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testConcurrentAccess() throws Exception {
+        ExpressionCache cache = new ExpressionCache(32);
+        AtomicInteger compilations = new AtomicInteger();
+        MathParser parser = new MathParser();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        String expression = (i % 16) + "×2";
+                        CompiledExpression compiled = cache.get(expression, key -> {
+                            compilations.incrementAndGet();
+                            return parser.compile(key);
+                        });
+                        assertEquals((i % 16) * 2.0, compiled.evaluate());
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(40_000, cache.getHitCount() + cache.getMissCount());
+        assertEquals(cache.getMissCount(), compilations.get());
+        assertEquals(16, cache.size());
+    }
+
+    @Test
+    void testInvalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> new ExpressionCache(0));
+    }
+}
@@ -0,0 +1,93 @@
+package test.model;
+
+import main.model.CompiledExpression;
+import main.model.ExpressionGroup;
+import main.model.MathParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EmptyStackException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExpressionGroupTest {
+
+    private final MathParser parser = new MathParser();
+
+    @Test
+    void testResultsMatchSeparateEvaluation() {
+        List<String> formulas = List.of("ln(x+1)", "ln(x+1)×2", "3+ln(x+1)÷y", "√(x^2+y^2)", "–√(x^2+y^2)", "x", "2");
+        ExpressionGroup group = parser.compileGroup(formulas, "x", "y");
+        assertEquals(formulas.size(), group.getExpressionCount());
+        assertEquals(List.of("x", "y"), group.getVariableNames());
+
+        double[] variables = {3, 4};
+        double[] results = group.evaluate(variables);
+        for (int i = 0; i < formulas.size(); i++) {
+            assertEquals(parser.compile(formulas.get(i), "x", "y").evaluate(variables), results[i], formulas.get(i));
+        }
+    }
+
+    @Test
+    void testSharedSubExpressionsAreStoredOnce() {
+        ExpressionGroup single = parser.compileGroup(List.of("ln(x+1)"), "x");
+        assertEquals(4, single.getNodeCount());
+
+        // x, 1, x+1 and ln(x+1) are shared, each formula only adds what is left
+        ExpressionGroup group = parser.compileGroup(List.of("ln(x+1)", "ln(x+1)×2", "ln(x+1)"), "x");
+        assertEquals(6, group.getNodeCount());
+        assertArrayEquals(new double[]{Math.log(4), Math.log(4) * 2, Math.log(4)}, group.evaluate(new double[]{3}));
+
+        ExpressionGroup repeated = parser.compileGroup(List.of("(a^2+b^2)×√(a^2+b^2)"), "a", "b");
+        assertEquals(8, repeated.getNodeCount());
+    }
+
+    @Test
+    void testRandomGroupsMatchSeparateEvaluation() {
+        String[] atoms = {"x", "y", "1", "2", "0.5", "+", "-", "×", "÷", "^", "(", ")", "–", "√", "ln", "log"};
+        Random random = new Random(12);
+        RandomExpressions expressions = new RandomExpressions(random, parser, atoms, 12, "x", "y");
+        for (int round = 0; round < 200; round++) {
+            List<String> formulas = new ArrayList<>();
+            List<CompiledExpression> separate = new ArrayList<>();
+            while (formulas.size() < 8) {
+                CompiledExpression compiled = expressions.next();
+                if (compiled.getInstructionCount() > 0) {
+                    separate.add(compiled);
+                    formulas.add(expressions.text());
+                }
+            }
+            ExpressionGroup group = parser.compileGroup(formulas, "x", "y");
+            double[] variables = {1 + random.nextDouble() * 10, random.nextDouble() * 2 - 1};
+
+            double[] expected = new double[formulas.size()];
+            boolean fails = false;
+            for (int i = 0; i < expected.length; i++) {
+                try {
+                    expected[i] = separate.get(i).evaluate(variables);
+                } catch (ArithmeticException e) {
+                    fails = true;
+                }
+            }
+            if (fails) {
+                assertThrows(ArithmeticException.class, () -> group.evaluate(variables), formulas::toString);
+            } else {
+                assertArrayEquals(expected, group.evaluate(variables), formulas::toString);
+            }
+        }
+    }
+
+    @Test
+    void testErrors() {
+        ExpressionGroup group = parser.compileGroup(List.of("x+1", "1÷x"), "x");
+        assertThrows(ArithmeticException.class, () -> group.evaluate(new double[]{0}));
+        assertThrows(IllegalArgumentException.class, () -> group.evaluate(new double[0]));
+        assertThrows(IllegalArgumentException.class, () -> group.evaluate(new double[]{1}, new double[1]));
+        assertThrows(EmptyStackException.class, () -> parser.compileGroup(List.of("1", "")).evaluate(new double[0]));
+        assertThrows(IllegalArgumentException.class, () -> parser.compileGroup(List.of("1", "2+")));
+    }
+}
@@ -0,0 +1,65 @@
+package test.model;
+
+import main.model.CompiledExpression;
+import main.model.MathParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static test.model.RandomExpressions.assertSameOutcomes;
+import static test.model.RandomExpressions.outcome;
+
+class ExpressionOptimizerTest {
+
+    private static final double[] SPECIAL_VALUES = {0.0, -0.0, 1.0, -1.0, 2.5, -3.75, 1e300, Double.NaN,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE};
+
+    private final MathParser optimizing = new MathParser(null, true);
+    private final MathParser plain = new MathParser(null, false);
+
+    @Test
+    void testFoldsConstants() {
+        assertEquals(3, optimizing.compile("2π×r", "r").getInstructionCount());
+        assertEquals(3, optimizing.compile("ln(e)×x+0", "x").getInstructionCount());
+        assertEquals(1, optimizing.compile("(5-2)4÷2+7÷(3+1)×(6÷2)").getInstructionCount());
+        assertEquals(plain.compile("2π×r", "r").evaluate(new double[]{1.5}), optimizing.compile("2π×r", "r").evaluate(new double[]{1.5}));
+    }
+
+    @Test
+    void testCollapsesNegation() {
+        // each en dash was (0-1) followed by a multiplication
+        assertEquals(2, optimizing.compile("–x", "x").getInstructionCount());
+        assertEquals(1, optimizing.compile("–(–x)", "x").getInstructionCount());
+        assertEquals(5, plain.compile("–x", "x").getInstructionCount());
+        assertEquals(9, plain.compile("–(–x)", "x").getInstructionCount());
+        assertEquals(-0.0, optimizing.compile("–x", "x").evaluate(new double[]{0.0}));
+    }
+
+    @Test
+    void testRemovesIdentities() {
+        assertEquals(1, optimizing.compile("x×1", "x").getInstructionCount());
+        assertEquals(1, optimizing.compile("1×x÷1", "x").getInstructionCount());
+        assertEquals(1, optimizing.compile("x^1-0", "x").getInstructionCount());
+        // x+0 is not x when x is -0
+        assertEquals(3, optimizing.compile("x+0", "x").getInstructionCount());
+    }
+
+    @Test
+    void testKeepsFailingConstants() {
+        CompiledExpression division = optimizing.compile("x+1÷0", "x");
+        assertEquals("ArithmeticException", outcome(division, new double[]{1}));
+        assertEquals("ArithmeticException", outcome(optimizing.compile("ln(0)"), new double[0]));
+        assertEquals("ArithmeticException", outcome(optimizing.compile("(1÷0) 2"), new double[0]));
+    }
+
+    @Test
+    void testBitIdenticalToUnoptimized() {
+        RandomExpressions expressions = new RandomExpressions(new Random(10), plain, RandomExpressions.ATOMS, 14, "x", "y");
+        for (int compared = 0; compared < 20_000; compared++) {
+            CompiledExpression expected = expressions.next();
+            CompiledExpression actual = optimizing.compile(expressions.text(), "x", "y");
+            assertSameOutcomes(expected, actual, SPECIAL_VALUES, expressions.text());
+        }
+    }
+}
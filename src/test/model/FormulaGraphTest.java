@@ -0,0 +1,180 @@
+package test.model;
+
+import main.model.FormulaGraph;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FormulaGraphTest {
+
+    @Test
+    void testFormulasUseInputsAndOtherFormulas() {
+        FormulaGraph graph = new FormulaGraph();
+        graph.setInput("price", 20);
+        graph.setInput("quantity", 3);
+        graph.setInput("rate", 0.25);
+        graph.define("net", "price×quantity");
+        graph.define("tax", "net×rate");
+        graph.define("total", "net+tax");
+
+        assertEquals(75, graph.getValue("total"));
+        assertEquals(15, graph.getValue("tax"));
+        assertEquals(List.of("net", "tax"), graph.getOperands("total"));
+        assertEquals(List.of(), graph.getOperands("price"));
+        assertEquals("net×rate", graph.getFormula("tax"));
+        assertNull(graph.getFormula("rate"));
+        assertEquals(6, graph.size());
+
+        graph.setInput("quantity", 4);
+        assertEquals(100, graph.getValue("total"));
+    }
+
+    @Test
+    void testOnlyAffectedFormulasAreRecomputed() {
+        FormulaGraph graph = new FormulaGraph();
+        for (int i = 0; i < 100; i++) {
+            graph.setInput("in" + i, i);
+            graph.define("out" + i, "in" + i + "×2+1");
+        }
+        graph.define("sum", "out0+out1+out2");
+        assertEquals(101, graph.recompute());
+        assertEquals(0, graph.getDirtyCount());
+
+        graph.setInput("in50", 7);
+        assertEquals(1, graph.getDirtyCount());
+        assertEquals(1, graph.recompute());
+        assertEquals(15, graph.getValue("out50"));
+
+        graph.setInput("in1", 10);
+        assertEquals(2, graph.getDirtyCount());
+        assertEquals(1 + 21 + 5, graph.getValue("sum"));
+        assertEquals(0, graph.getDirtyCount());
+
+        // setting an input to the value it already has changes nothing
+        graph.setInput("in2", 2);
+        assertEquals(0, graph.getDirtyCount());
+    }
+
+    @Test
+    void testNamesNextToEachOther() {
+        FormulaGraph graph = new FormulaGraph();
+        graph.setInput("a", 2);
+        graph.setInput("b", 3);
+        graph.setInput("ab", 10);
+        graph.setInput("a2", 100);
+        // the longest name wins, and names can follow each other without an operator
+        graph.define("x", "ab+2a+ba+a2");
+        assertEquals(10 + 4 + 6 + 100, graph.getValue("x"));
+        assertEquals(List.of("a", "ab", "b", "a2"), graph.getOperands("x"));
+    }
+
+    @Test
+    void testRedefinition() {
+        FormulaGraph graph = new FormulaGraph();
+        graph.setInput("x", 2);
+        graph.setInput("y", 5);
+        graph.define("a", "x+1");
+        graph.define("b", "a×10");
+        graph.define("c", "y");
+        assertEquals(30, graph.getValue("b"));
+
+        // a now depends on c, which was defined after it, and b follows
+        graph.define("a", "c-1");
+        assertEquals(40, graph.getValue("b"));
+        graph.setInput("x", 100);
+        assertEquals(0, graph.getDirtyCount());
+        graph.setInput("y", 6);
+        assertEquals(3, graph.getDirtyCount());
+        assertEquals(50, graph.getValue("b"));
+
+        assertThrows(IllegalArgumentException.class, () -> graph.define("c", "b+1"));
+        assertThrows(IllegalArgumentException.class, () -> graph.define("a", "a+1"));
+        // a failed definition leaves the graph as it was
+        assertEquals("y", graph.getFormula("c"));
+        assertEquals(50, graph.getValue("b"));
+        graph.setInput("y", 7);
+        assertEquals(60, graph.getValue("b"));
+    }
+
+    @Test
+    void testFailuresPropagate() {
+        FormulaGraph graph = new FormulaGraph();
+        graph.setInput("x", 0);
+        graph.define("inverse", "1÷x");
+        graph.define("twice", "inverse×2");
+        graph.define("other", "x+1");
+        ArithmeticException e = assertThrows(ArithmeticException.class, () -> graph.getValue("twice"));
+        assertEquals("Division by zero", e.getMessage());
+        assertEquals(1, graph.getValue("other"));
+
+        graph.setInput("x", 4);
+        assertEquals(0.5, graph.getValue("twice"));
+    }
+
+    @Test
+    void testInvalidUse() {
+        FormulaGraph graph = new FormulaGraph();
+        graph.setInput("x", 1);
+        graph.define("y", "x+1");
+        assertThrows(IllegalArgumentException.class, () -> graph.setInput("y", 2));
+        assertThrows(IllegalArgumentException.class, () -> graph.define("x", "2"));
+        assertThrows(IllegalArgumentException.class, () -> graph.define("z", ""));
+        assertThrows(IllegalArgumentException.class, () -> graph.define("z", "x+unknown"));
+        assertThrows(IllegalArgumentException.class, () -> graph.define("ln", "2"));
+        assertThrows(IllegalArgumentException.class, () -> graph.setInput("2x", 2));
+        assertThrows(IllegalArgumentException.class, () -> graph.getValue("z"));
+        assertFalse(graph.contains("z"));
+        assertTrue(graph.contains("y"));
+        assertThrows(IllegalArgumentException.class, () -> new FormulaGraph(ForkJoinPool.commonPool(), 0));
+    }
+
+    @Test
+    void testParallelMatchesSequential() {
+        // layers of formulas, each reading a few formulas from the layer below
+        FormulaGraph sequential = new FormulaGraph();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        FormulaGraph parallel = new FormulaGraph(pool, 8);
+        String[] operators = {"+", "-", "×", "÷"};
+        for (FormulaGraph graph : new FormulaGraph[]{sequential, parallel}) {
+            Random random = new Random(23);
+            for (int i = 0; i < 50; i++) {
+                graph.setInput("in" + i, 1 + random.nextDouble());
+            }
+            for (int layer = 0; layer < 10; layer++) {
+                String below = layer == 0 ? "in" : "f" + (layer - 1) + "_";
+                for (int i = 0; i < 50; i++) {
+                    String formula = below + random.nextInt(50) + operators[random.nextInt(4)] + below + random.nextInt(50)
+                            + "+√(" + below + random.nextInt(50) + "×" + below + random.nextInt(50) + ")";
+                    graph.define("f" + layer + "_" + i, formula);
+                }
+            }
+        }
+        assertEquals(sequential.recompute(), parallel.recomputeParallel());
+
+        Random random = new Random(24);
+        for (int tick = 0; tick < 20; tick++) {
+            String input = "in" + random.nextInt(50);
+            double value = 1 + random.nextDouble();
+            sequential.setInput(input, value);
+            parallel.setInput(input, value);
+            assertEquals(sequential.getDirtyCount(), parallel.getDirtyCount());
+            sequential.recompute();
+            parallel.recomputeParallel();
+            for (int layer = 0; layer < 10; layer++) {
+                for (int i = 0; i < 50; i++) {
+                    String name = "f" + layer + "_" + i;
+                    assertEquals(sequential.getValue(name), parallel.getValue(name), name);
+                }
+            }
+        }
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,136 @@
+package test.model;
+
+import main.model.CompiledExpression;
+import main.model.GradientEvaluator;
+import main.model.MathParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.EmptyStackException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GradientEvaluatorTest {
+
+    private final MathParser parser = new MathParser();
+
+    private double[] gradient(String expression, double... variables) {
+        String[] names = {"x", "y", "z"};
+        GradientEvaluator evaluator = new GradientEvaluator(parser.compile(expression, names));
+        double[] gradient = new double[3];
+        evaluator.evaluate(variables, gradient);
+        return gradient;
+    }
+
+    @Test
+    void testKnownDerivatives() {
+        assertArrayEquals(new double[]{1, 1, 0}, gradient("x+y", 2, 3, 4));
+        assertArrayEquals(new double[]{1, -1, 0}, gradient("x-y", 2, 3, 4));
+        assertArrayEquals(new double[]{3, 2, 0}, gradient("x×y", 2, 3, 4));
+        assertArrayEquals(new double[]{0.5, -0.25, 0}, gradient("x÷y", 1, 2, 4));
+        assertArrayEquals(new double[]{12, 8 * Math.log(2), 0}, gradient("x^y", 2, 3, 4), 1e-12);
+        assertArrayEquals(new double[]{0.25, 0, 0}, gradient("√(x)", 4, 3, 4));
+        assertArrayEquals(new double[]{0.5, 0, 0}, gradient("ln(x)", 2, 3, 4));
+        assertArrayEquals(new double[]{1 / (100 * Math.log(10)), 0, 0}, gradient("log(x)", 100, 3, 4), 1e-15);
+        assertArrayEquals(new double[]{-1, 0, 0}, gradient("–x", 2, 3, 4));
+        assertArrayEquals(new double[]{Math.PI, 0, Math.E}, gradient("πx+ez", 2, 3, 4));
+        // a variable used several times collects every use
+        assertArrayEquals(new double[]{4, 0, 0}, gradient("x×x", 2, 3, 4));
+        assertArrayEquals(new double[]{-12, 0, 0}, gradient("x^2×3", -2, 3, 4));
+        // constants only
+        assertArrayEquals(new double[]{0, 0, 0}, gradient("2^3+ln(e)", 2, 3, 4));
+    }
+
+    @Test
+    void testValueMatchesEvaluate() {
+        CompiledExpression expression = parser.compile("√(x^2+y^2)×ln(z+1)÷(x-y)", "x", "y", "z");
+        double[] variables = {3, 4, 5};
+        double[] gradient = new double[3];
+        assertEquals(expression.evaluate(variables), new GradientEvaluator(expression).evaluate(variables, gradient));
+    }
+
+    @Test
+    void testMatchesFiniteDifferences() {
+        String[] atoms = {"x", "y", "z", "2", "0.5", "+", "-", "×", "÷", "^", "(", ")", "–", "e", "π", "√", "ln", "log"};
+        Random random = new Random(22);
+        RandomExpressions expressions = new RandomExpressions(random, parser, atoms, 12, "x", "y", "z");
+        int compared = 0;
+        while (compared < 500) {
+            CompiledExpression expression = expressions.next();
+            String text = expressions.text();
+            if (expression.getInstructionCount() == 0) {
+                continue;
+            }
+            double[] variables = {0.5 + random.nextDouble() * 3, 0.5 + random.nextDouble() * 3, 0.5 + random.nextDouble() * 3};
+            double value;
+            double[] gradient = new double[3];
+            try {
+                value = new GradientEvaluator(expression).evaluate(variables, gradient);
+            } catch (ArithmeticException e) {
+                assertThrows(ArithmeticException.class, () -> expression.evaluate(variables), text);
+                continue;
+            }
+            assertEquals(expression.evaluate(variables), value, text);
+            if (!Double.isFinite(value) || Math.abs(value) > 1e6) {
+                continue;
+            }
+            for (int slot = 0; slot < 3; slot++) {
+                double estimate = centralDifference(expression, variables, slot);
+                if (Double.isFinite(estimate) && Math.abs(estimate) < 1e4) {
+                    double tolerance = 1e-4 * Math.max(1, Math.abs(estimate));
+                    assertEquals(estimate, gradient[slot], tolerance, text + " by " + "xyz".charAt(slot));
+                }
+            }
+            compared++;
+        }
+    }
+
+    private static double centralDifference(CompiledExpression expression, double[] variables, int slot) {
+        double step = 1e-6 * Math.max(1, Math.abs(variables[slot]));
+        double[] shifted = variables.clone();
+        try {
+            shifted[slot] = variables[slot] + step;
+            double above = expression.evaluate(shifted);
+            shifted[slot] = variables[slot] - step;
+            double below = expression.evaluate(shifted);
+            return (above - below) / (2 * step);
+        } catch (ArithmeticException e) {
+            return Double.NaN;
+        }
+    }
+
+    @Test
+    void testEdgeCases() {
+        // the derivative of √x does not exist at 0
+        assertEquals(Double.POSITIVE_INFINITY, gradient("√(x)", 0, 1, 1)[0]);
+        // 0^y is 0 for every positive y
+        assertArrayEquals(new double[]{0, 0, 0}, gradient("x^y", 0, 2, 1));
+        // a negative base has no derivative with respect to the exponent
+        assertTrue(Double.isNaN(gradient("x^y", -2, 2, 1)[1]));
+        // zero times the missing derivative of √x at 0 is NaN, not 0
+        assertTrue(Double.isNaN(gradient("√(x)×0", 0, 1, 1)[0]));
+        assertTrue(Double.isNaN(gradient("0×x^y+y", -2, 2, 1)[1]));
+        // the gradient array is overwritten, not added to
+        GradientEvaluator evaluator = new GradientEvaluator(parser.compile("x×y", "x", "y"));
+        double[] gradient = {100, 100, 100};
+        evaluator.evaluate(new double[]{2, 3}, gradient);
+        assertArrayEquals(new double[]{3, 2, 100}, gradient);
+    }
+
+    @Test
+    void testErrors() {
+        GradientEvaluator evaluator = new GradientEvaluator(parser.compile("1÷x+ln(y)", "x", "y"));
+        double[] gradient = new double[2];
+        assertThrows(ArithmeticException.class, () -> evaluator.evaluate(new double[]{0, 1}, gradient));
+        assertThrows(ArithmeticException.class, () -> evaluator.evaluate(new double[]{1, 0}, gradient));
+        assertThrows(IllegalArgumentException.class, () -> evaluator.evaluate(new double[1], gradient));
+        assertThrows(IllegalArgumentException.class, () -> evaluator.evaluate(new double[2], new double[1]));
+        assertThrows(EmptyStackException.class, () -> new GradientEvaluator(parser.compile("()")).evaluate(new double[0], new double[0]));
+        // still usable after a failure
+        assertEquals(1, evaluator.evaluate(new double[]{1, 1}, gradient));
+        assertArrayEquals(new double[]{-1, 1}, gradient);
+    }
+}
@@ -0,0 +1,102 @@
+package test.model;
+
+import main.model.IncrementalExpression;
+import main.model.MathParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.EmptyStackException;
+import java.util.OptionalDouble;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalExpressionTest {
+
+    private static final String[] KEYS = {"0", "1", "2", "7", "9", ".", "+", "-", "×", "÷", "^", "(", ")", "–", "√", "ln", "log", "e", "π", " "};
+
+    private final MathParser parser = new MathParser();
+
+    private OptionalDouble expected(String text) {
+        try {
+            return OptionalDouble.of(parser.parseExpression(text));
+        } catch (IllegalArgumentException | ArithmeticException | EmptyStackException e) {
+            return OptionalDouble.empty();
+        }
+    }
+
+    @Test
+    void testPreview() {
+        IncrementalExpression expression = new IncrementalExpression();
+        assertEquals(OptionalDouble.empty(), expression.preview());
+        expression.append("1");
+        assertEquals(OptionalDouble.of(1), expression.preview());
+        expression.append("2+3");
+        assertEquals(OptionalDouble.of(15), expression.preview());
+        expression.append("×(");
+        assertEquals(OptionalDouble.empty(), expression.preview());
+        expression.append("2)");
+        assertEquals(OptionalDouble.of(18), expression.preview());
+        expression.deleteLast(4);
+        assertEquals("12+3", expression.getText());
+        assertEquals(OptionalDouble.of(15), expression.preview());
+        expression.append("÷0");
+        assertEquals(OptionalDouble.empty(), expression.preview());
+        expression.append(".5");
+        assertEquals(OptionalDouble.of(18), expression.preview());
+        expression.clear();
+        assertEquals(0, expression.length());
+        expression.append("l");
+        assertEquals(OptionalDouble.empty(), expression.preview());
+        expression.append("n(e)");
+        assertEquals(OptionalDouble.of(1), expression.preview());
+        assertThrows(IllegalArgumentException.class, () -> expression.deleteLast(6));
+    }
+
+    @Test
+    void testPreviewMatchesParserOnEveryKeystroke() {
+        Random random = new Random(16);
+        IncrementalExpression expression = new IncrementalExpression();
+        StringBuilder text = new StringBuilder();
+        for (int step = 0; step < 200_000; step++) {
+            int action = random.nextInt(10);
+            if (action < 2 && text.length() > 0) {
+                int count = 1 + random.nextInt(Math.min(3, text.length()));
+                text.setLength(text.length() - count);
+                expression.deleteLast(count);
+            } else if (action == 2 && random.nextInt(20) == 0) {
+                text.setLength(0);
+                expression.clear();
+            } else {
+                String key = KEYS[random.nextInt(KEYS.length)];
+                text.append(key);
+                expression.append(key);
+            }
+            if (text.length() > 40) {
+                text.setLength(0);
+                expression.clear();
+            }
+            assertEquals(expected(text.toString()), expression.preview(), text::toString);
+        }
+    }
+
+    @Test
+    void testKeystrokeCostDoesNotGrowWithLength() {
+        IncrementalExpression expression = new IncrementalExpression();
+        String unit = "(12.5×3-4)÷2+";
+        expression.append(unit.repeat(100_000));
+        expression.append("1");
+        assertEquals(OptionalDouble.of(100_000 * 16.75 + 1), expression.preview());
+
+        // retokenizing the whole expression on every keystroke would take minutes here
+        long start = System.nanoTime();
+        for (int i = 0; i < 100_000; i++) {
+            expression.append("+2");
+            assertTrue(expression.preview().isPresent());
+            expression.deleteLast(2);
+        }
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        assertEquals(OptionalDouble.of(100_000 * 16.75 + 1), expression.preview());
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class MathParserTest {
 
@@ -170,6 +171,14 @@ class MathParserTest {
         assertThrows(IllegalArgumentException.class, () -> parser.parseExpression("2 + 3))"));
     }
 
+    @Test
+    void testMismatchedParenthesesOffset() {
+        IllegalArgumentException unmatchedClose = assertThrows(IllegalArgumentException.class, () -> parser.parseExpression("(1+2))×3"));
+        assertTrue(unmatchedClose.getMessage().contains("index 5"), unmatchedClose.getMessage());
+        IllegalArgumentException unmatchedOpen = assertThrows(IllegalArgumentException.class, () -> parser.parseExpression("(1+(2×(3)"));
+        assertTrue(unmatchedOpen.getMessage().contains("index 3"), unmatchedOpen.getMessage());
+    }
+
 
     @Test
     void testIncorrectOperatorUsage() {
@@ -193,4 +202,19 @@ class MathParserTest {
     void testInvalidSqrtFunction() {
         assertThrows(IllegalArgumentException.class, () -> parser.parseExpression("√-4"));
     }
+
+    @Test
+    void testTokenBudget() {
+        MathParser limited = new MathParser(null, true, 5);
+        assertEquals(7.0, limited.parseExpression("1+2×3"));
+        // 2π(1) is 2 × π × ( 1 ), seven tokens once the implied multiplications are counted
+        assertThrows(IllegalArgumentException.class, () -> limited.parseExpression("2π(1)"));
+        IllegalArgumentException tooLong = assertThrows(IllegalArgumentException.class, () -> limited.parseExpression("1+2+3+4"));
+        assertTrue(tooLong.getMessage().contains("5 tokens"), tooLong.getMessage());
+
+        // a huge input fails as soon as the budget is used up, without reading the rest of it
+        String huge = "1+".repeat(5_000_000) + "1";
+        assertThrows(IllegalArgumentException.class, () -> new MathParser(null, true, 1_000).parseExpression(huge));
+        assertThrows(IllegalArgumentException.class, () -> new MathParser(null, true, 0));
+    }
 }
@@ -2,6 +2,7 @@ package test.model;
 
 import main.model.MathTokenizer;
 import main.model.Token;
+import main.model.TokenBuffer;
 import main.model.TokenType;
 import org.junit.jupiter.api.Test;
 
@@ -68,20 +69,11 @@ public class MathTokenizerTest {
     @Test
     void testUnaryNegation() {
         List<Token> tokens = tokenizer.tokenize("–3");
-        assertEquals(TokenType.PARENTHESIS, tokens.get(0).getType());
-        assertEquals("(", tokens.get(0).getValue());
+        assertEquals(2, tokens.size());
+        assertEquals(TokenType.OPERATOR, tokens.get(0).getType());
+        assertEquals("–", tokens.get(0).getValue());
         assertEquals(TokenType.NUMBER, tokens.get(1).getType());
-        assertEquals("0", tokens.get(1).getValue());
-        assertEquals(TokenType.OPERATOR, tokens.get(2).getType());
-        assertEquals("-", tokens.get(2).getValue());
-        assertEquals(TokenType.NUMBER, tokens.get(3).getType());
-        assertEquals("1", tokens.get(3).getValue());
-        assertEquals(TokenType.PARENTHESIS, tokens.get(4).getType());
-        assertEquals(")", tokens.get(4).getValue());
-        assertEquals(TokenType.OPERATOR, tokens.get(5).getType());
-        assertEquals("*", tokens.get(5).getValue());
-        assertEquals(TokenType.NUMBER, tokens.get(6).getType());
-        assertEquals("3", tokens.get(6).getValue());
+        assertEquals("3", tokens.get(1).getValue());
     }
 
     @Test
@@ -96,4 +88,58 @@ public class MathTokenizerTest {
         assertThrows(IllegalArgumentException.class, () -> tokenizer.tokenize("2..3"));
         assertThrows(IllegalArgumentException.class, () -> tokenizer.tokenize("5_4"));
     }
+
+    @Test
+    void testVariables() {
+        List<Token> tokens = new MathTokenizer("x", "rate").tokenize("2rate+x");
+        assertEquals(5, tokens.size());
+        assertEquals(TokenType.NUMBER, tokens.get(0).getType());
+        assertEquals(TokenType.OPERATOR, tokens.get(1).getType());
+        assertEquals("×", tokens.get(1).getValue());
+        assertEquals(TokenType.VARIABLE, tokens.get(2).getType());
+        assertEquals("rate", tokens.get(2).getValue());
+        assertEquals(TokenType.VARIABLE, tokens.get(4).getType());
+        assertEquals("x", tokens.get(4).getValue());
+        assertThrows(IllegalArgumentException.class, () -> tokenizer.tokenize("2x"));
+    }
+
+    @Test
+    void testTokenBuffer() {
+        TokenBuffer tokens = new TokenBuffer();
+        tokenizer.tokenize("12.5+2π(–3)", tokens);
+        assertEquals(10, tokens.size());
+        assertEquals(TokenBuffer.NUMBER, tokens.kind(0));
+        assertEquals(0, tokens.start(0));
+        assertEquals(4, tokens.length(0));
+        assertEquals(12.5, tokens.number(0));
+        assertEquals(TokenBuffer.PLUS, tokens.kind(1));
+        assertEquals(TokenBuffer.NUMBER, tokens.kind(2));
+        assertEquals(TokenBuffer.TIMES, tokens.kind(3));
+        assertEquals(0, tokens.length(3));
+        assertEquals(TokenBuffer.NUMBER, tokens.kind(4));
+        assertEquals(Math.PI, tokens.number(4));
+        assertEquals(TokenBuffer.TIMES, tokens.kind(5));
+        assertEquals(TokenBuffer.LEFT_PARENTHESIS, tokens.kind(6));
+        assertEquals(TokenBuffer.NEGATE, tokens.kind(7));
+        assertEquals(8, tokens.start(7));
+        assertEquals(TokenBuffer.NUMBER, tokens.kind(8));
+        assertEquals(TokenBuffer.RIGHT_PARENTHESIS, tokens.kind(9));
+
+        // reusing the buffer discards the previous tokens
+        new MathTokenizer("x", "y").tokenize("y", tokens);
+        assertEquals(1, tokens.size());
+        assertEquals(TokenBuffer.VARIABLE, tokens.kind(0));
+        assertEquals(1, tokens.slot(0));
+    }
+
+    @Test
+    void testTokenBufferNumbersMatchParseDouble() {
+        String[] numbers = {"0", "7", "0.1", ".5", "3.", "123456.789", "0.000001", "9007199254740993", "3.14159265358979323846",
+                "0.30000000000000004", "1234567890.123456789", "000000000000000000001.5"};
+        TokenBuffer tokens = new TokenBuffer();
+        for (String number : numbers) {
+            tokenizer.tokenize(number, tokens);
+            assertEquals(Double.parseDouble(number), tokens.number(0), number);
+        }
+    }
 }
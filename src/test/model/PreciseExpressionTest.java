@@ -0,0 +1,128 @@
+package test.model;
+
+import main.model.EngineMetrics;
+import main.model.MathParser;
+import main.model.PreciseExpression;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.EmptyStackException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PreciseExpressionTest {
+    private static final String PI_50 = "3.1415926535897932384626433832795028841971693993751";
+    private static final String E_50 = "2.7182818284590452353602874713526624977572470937000";
+    private static final String LN_2_50 = "0.69314718055994530941723212145817656807550013436026";
+
+    private final MathParser parser = new MathParser();
+
+    private String evaluate(String expression, int digits) {
+        return parser.compilePrecise(expression).evaluate(new MathContext(digits)).toPlainString();
+    }
+
+    @Test
+    void testDecimalResults() {
+        assertEquals("0.3", evaluate("0.1+0.2", 10));
+        assertEquals("0.3", evaluate("0.1+0.2", 30));
+        assertEquals("0.333333333333333333333333333333", evaluate("1÷3", 30));
+        assertEquals("1.1", evaluate("3.3÷3", 20));
+        assertEquals("1000000000000000000000.1", evaluate("10^21+0.1", 30));
+        assertEquals("0.0000000000000000000001", evaluate("10^(–22)", 5));
+        assertEquals("-2.5", evaluate("–5÷2", 10));
+        assertEquals("12", evaluate("√(144)", 40));
+        assertEquals("3", evaluate("log(1000)", 40));
+        assertEquals("0", evaluate("ln(1)", 40));
+        assertEquals("1", evaluate("0^0", 40));
+        // rounding happens once, on the exact result
+        assertEquals("0.7", evaluate("0.65", 1));
+        assertEquals("0.67", evaluate("2÷3", 2));
+        // exactly halfway, which only exact arithmetic can tell
+        assertEquals("0.13", evaluate("1÷8", 2));
+        assertEquals("1.016", evaluate("1.0155÷3×3", 4));
+        assertEquals("1", parser.compilePrecise("1÷3×3").evaluate(new MathContext(5, RoundingMode.DOWN)).toPlainString());
+    }
+
+    @Test
+    void testIrrationalResults() {
+        assertEquals(new BigDecimal(PI_50).round(new MathContext(40)).toPlainString(), evaluate("π", 40));
+        assertEquals(new BigDecimal(E_50).round(new MathContext(45)).stripTrailingZeros().toPlainString(), evaluate("e", 45));
+        assertEquals(new BigDecimal(LN_2_50).round(new MathContext(50)).toPlainString(), evaluate("ln(2)", 50));
+        assertEquals(new BigDecimal(LN_2_50).round(new MathContext(30)).toPlainString(), evaluate("–ln(0.5)", 30));
+        assertEquals(BigDecimal.TWO.sqrt(new MathContext(40)).toPlainString(), evaluate("√(2)", 40));
+        assertEquals(BigDecimal.TWO.sqrt(new MathContext(40)).toPlainString(), evaluate("2^0.5", 40));
+        assertEquals("0.3010299956639811952137388947", evaluate("log(2)", 28));
+        assertEquals("23.14069263277926900572908636794854738", evaluate("e^π", 37));
+        assertEquals("22.45915771836104547342715220454373502759", evaluate("π^e", 40));
+    }
+
+    @Test
+    void testVariables() {
+        PreciseExpression compound = parser.compilePrecise("p×(1+r)^n", "p", "r", "n");
+        BigDecimal principal = new BigDecimal("1000.00");
+        // 1.05^10 = 1.62889462677744140625 exactly
+        assertEquals(new BigDecimal("1628.89462677744140625"),
+                compound.evaluate(new MathContext(30), principal, new BigDecimal("0.05"), BigDecimal.TEN));
+        assertEquals(new BigDecimal("1628.89"),
+                compound.evaluate(new MathContext(6, RoundingMode.HALF_EVEN), principal, new BigDecimal("0.05"), BigDecimal.TEN));
+        assertEquals(new BigDecimal("1628.8"),
+                compound.evaluate(new MathContext(5, RoundingMode.DOWN), principal, new BigDecimal("0.05"), BigDecimal.TEN));
+    }
+
+    @Test
+    void testMostEvaluationsStayInDouble() {
+        // monthly payment of a loan, at ten digits, against the same at forty digits rounded to ten
+        EngineMetrics metrics = new EngineMetrics();
+        MathParser countingParser = new MathParser(null, true, Integer.MAX_VALUE, metrics);
+        PreciseExpression payment = countingParser.compilePrecise("p×r÷12÷(1-(1+r÷12)^(–n))", "p", "r", "n");
+        Random random = new Random(24);
+        MathContext tenDigits = new MathContext(10);
+        MathContext fortyDigits = new MathContext(40);
+        for (int i = 0; i < 1000; i++) {
+            BigDecimal principal = BigDecimal.valueOf(random.nextInt(10_000_000), 2);
+            BigDecimal rate = BigDecimal.valueOf(1 + random.nextInt(2000), 4);
+            BigDecimal months = BigDecimal.valueOf(1 + random.nextInt(360));
+            BigDecimal expected = payment.evaluate(fortyDigits, principal, rate, months).round(tenDigits);
+            assertEquals(0, expected.compareTo(payment.evaluate(tenDigits, principal, rate, months)));
+        }
+        assertEquals(2000, metrics.getPreciseEvaluationCount());
+        // forty digits never fit in a double, ten almost always do
+        assertTrue(metrics.getPreciseFallbackCount() < 1010, "fallbacks: " + metrics.getPreciseFallbackCount());
+        // parseExpression calls are counted apart
+        assertEquals(0, metrics.getEvaluationCount());
+    }
+
+    @Test
+    void testErrors() {
+        assertThrows(ArithmeticException.class, () -> evaluate("1÷0", 10));
+        assertThrows(ArithmeticException.class, () -> evaluate("1÷(0.1+0.2-0.3)", 10));
+        assertThrows(ArithmeticException.class, () -> evaluate("1÷(1÷3×3-1)", 10));
+        // exactly zero, but √2 cannot be written out exactly, so the divisor is only known to be tiny
+        ArithmeticException e = assertThrows(ArithmeticException.class, () -> evaluate("1÷(√(2)×√(2)-2)", 10));
+        assertEquals("Division by zero", e.getMessage());
+        assertEquals("Argument of ln must be positive",
+                assertThrows(ArithmeticException.class, () -> evaluate("ln(0)", 10)).getMessage());
+        assertEquals("Argument of log must be positive",
+                assertThrows(ArithmeticException.class, () -> evaluate("log(1-2)", 10)).getMessage());
+        assertThrows(ArithmeticException.class, () -> evaluate("√(–1)", 10));
+        assertThrows(ArithmeticException.class, () -> evaluate("(–8)^0.5", 10));
+        assertThrows(ArithmeticException.class, () -> evaluate("0^(–1)", 10));
+        // two is a rounding boundary when rounding down, and √2×√2 cannot be told apart from it
+        assertThrows(ArithmeticException.class,
+                () -> parser.compilePrecise("√(2)×√(2)").evaluate(new MathContext(5, RoundingMode.DOWN)));
+        assertEquals(new BigDecimal("2"), parser.compilePrecise("√(2)×√(2)").evaluate(new MathContext(5)));
+
+        PreciseExpression expression = parser.compilePrecise("x+1", "x");
+        assertThrows(IllegalArgumentException.class, () -> expression.evaluate(new MathContext(5)));
+        assertThrows(IllegalArgumentException.class, () -> expression.evaluate(MathContext.UNLIMITED, BigDecimal.ONE));
+        assertThrows(IllegalArgumentException.class,
+                () -> expression.evaluate(new MathContext(5, RoundingMode.UNNECESSARY), BigDecimal.ONE));
+        assertThrows(IllegalArgumentException.class, () -> parser.compilePrecise("1+"));
+        assertThrows(EmptyStackException.class, () -> parser.compilePrecise("").evaluate(new MathContext(5)));
+    }
+}
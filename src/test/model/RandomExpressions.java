@@ -0,0 +1,73 @@
+package test.model;
+
+import main.model.CompiledExpression;
+import main.model.ExpressionEvaluator;
+import main.model.MathParser;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Random expressions for the tests that check two ways of evaluating the same formula against each other. Each is
+// a string of random atoms; most such strings do not compile, and next() skips those
+final class RandomExpressions {
+    // every token kind, over the variables x and y
+    static final String[] ATOMS = {"x", "y", "0", "1", "2", "0.5", "+", "-", "×", "÷", "^", "(", ")", "–", "e", "π", "√", "ln", "log"};
+
+    private final Random random;
+    private final MathParser parser;
+    private final String[] atoms;
+    private final int maxLength;
+    private final String[] variableNames;
+    private String text;
+
+    RandomExpressions(Random random, MathParser parser, String[] atoms, int maxLength, String... variableNames) {
+        this.random = random;
+        this.parser = parser;
+        this.atoms = atoms;
+        this.maxLength = maxLength;
+        this.variableNames = variableNames;
+    }
+
+    // The next string of 1 to maxLength atoms that compiles, compiled by the parser
+    CompiledExpression next() {
+        while (true) {
+            StringBuilder expression = new StringBuilder();
+            int length = 1 + random.nextInt(maxLength);
+            for (int i = 0; i < length; i++) {
+                expression.append(atoms[random.nextInt(atoms.length)]);
+            }
+            try {
+                CompiledExpression compiled = parser.compile(expression.toString(), variableNames);
+                text = expression.toString();
+                return compiled;
+            } catch (IllegalArgumentException e) {
+                // not a valid expression, try another one
+            }
+        }
+    }
+
+    // The text of the expression next() returned last
+    String text() {
+        return text;
+    }
+
+    // Checks that both give the same outcome for every pair of x and y from values
+    static void assertSameOutcomes(ExpressionEvaluator expected, ExpressionEvaluator actual, double[] values, String expression) {
+        for (double x : values) {
+            for (double y : values) {
+                double[] variables = {x, y};
+                assertEquals(outcome(expected, variables), outcome(actual, variables), expression + " x=" + x + " y=" + y);
+            }
+        }
+    }
+
+    // the bits of the result, or the type of exception thrown
+    static String outcome(ExpressionEvaluator evaluator, double[] variables) {
+        try {
+            return Long.toHexString(Double.doubleToLongBits(evaluator.evaluate(variables)));
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName();
+        }
+    }
+}
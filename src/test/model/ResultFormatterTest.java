@@ -0,0 +1,88 @@
+package test.model;
+
+import main.model.ResultFormatter;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultFormatterTest {
+    // how results were formatted before, through BigDecimal and Double.toString
+    private static String reference(double result) {
+        double rounded = new BigDecimal(Double.toString(result)).setScale(12, RoundingMode.HALF_UP).doubleValue();
+        return rounded == (int) rounded ? String.valueOf((int) rounded) : String.valueOf(rounded);
+    }
+
+    private static void assertFormats(double result) {
+        assertEquals(reference(result), ResultFormatter.format(result), () -> "formatting " + result);
+    }
+
+    @Test
+    void testFormat() {
+        assertEquals("0", ResultFormatter.format(0));
+        assertEquals("0", ResultFormatter.format(-0.0));
+        assertEquals("0.3", ResultFormatter.format(0.1 + 0.2));
+        assertEquals("0.333333333333", ResultFormatter.format(1 / 3.0));
+        // 3333.333333333333 is not a double, and the one it reads back as prints with a 4
+        assertEquals("3333.333333333334", ResultFormatter.format(10000 / 3.0));
+        assertEquals("-7", ResultFormatter.format(-7));
+        assertEquals("2147483647", ResultFormatter.format(Integer.MAX_VALUE));
+        assertEquals("-2147483648", ResultFormatter.format(Integer.MIN_VALUE));
+        assertEquals("2.147483648E9", ResultFormatter.format(2147483648.0));
+        assertEquals("1.0E-4", ResultFormatter.format(1e-4));
+        assertEquals("0.001", ResultFormatter.format(1e-3));
+        assertEquals("1.0E-12", ResultFormatter.format(5e-13));
+        assertEquals("0", ResultFormatter.format(4.99e-13));
+        assertEquals("1", ResultFormatter.format(0.9999999999995));
+        assertEquals("1.0E22", ResultFormatter.format(1e22));
+    }
+
+    @Test
+    void testSameAsBigDecimal() {
+        double[] values = {1e7, 9999999.5, 1e16, 1e23, 4.35, 2.675, 123456.7890123456789, -2147483649.0,
+                9.999999999999e-13, Double.MIN_VALUE, Double.MIN_NORMAL, Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (double value : values) {
+            assertFormats(value);
+        }
+        Random random = new Random(25);
+        for (int i = 0; i < 100_000; i++) {
+            double value = switch (i % 5) {
+                // any finite double, from subnormals to the largest
+                case 0 -> Double.longBitsToDouble(Math.floorMod(random.nextLong(), Double.doubleToRawLongBits(Double.MAX_VALUE)));
+                case 1 -> random.nextInt();
+                case 2 -> random.nextInt(1_000_000) / Math.pow(10, random.nextInt(15));
+                case 3 -> (double) random.nextInt(100_000) / (1 + random.nextInt(1000));
+                // 16 and 17 digit results that rounding to 12 places changes
+                default -> (random.nextLong() >> random.nextInt(64)) * Math.pow(10, -12 - random.nextInt(6));
+            };
+            assertFormats(random.nextBoolean() ? value : -value);
+        }
+    }
+
+    @Test
+    void testSinks() {
+        ResultFormatter formatter = new ResultFormatter();
+        StringBuilder builder = new StringBuilder("=");
+        formatter.append(2.5, builder).append(' ');
+        formatter.append(-1e-300 * 1.2345678901234567, builder);
+        assertEquals("=2.5 0", builder.toString());
+
+        byte[] bytes = new byte[2 + ResultFormatter.MAX_LENGTH];
+        int end = formatter.write(-1.2345678901234567E300, bytes, 2);
+        assertEquals("-1.2345678901234567E300", new String(bytes, 2, end - 2, StandardCharsets.US_ASCII));
+        assertTrue(end - 2 <= ResultFormatter.MAX_LENGTH);
+    }
+
+    @Test
+    void testNotFinite() {
+        assertThrows(NumberFormatException.class, () -> ResultFormatter.format(Double.NaN));
+        assertThrows(NumberFormatException.class, () -> ResultFormatter.format(Double.POSITIVE_INFINITY));
+        assertThrows(NumberFormatException.class, () -> ResultFormatter.format(Double.NEGATIVE_INFINITY));
+    }
+}
@@ -0,0 +1,80 @@
+package test.ui;
+
+import main.ui.BatchRunner;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchRunnerTest {
+
+    @Test
+    void testResultsAndErrorsInInputOrder() throws IOException {
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        String input = "1+2\n5÷0\n\n2×(3\n0.1+0.2\n–2^2\n";
+        long failures = new BatchRunner(2).run(new BufferedReader(new StringReader(input)), out, err);
+
+        assertEquals(2, failures);
+        assertEquals("3\nARITHMETIC ERROR\n\nSYNTAX ERROR\n0.3\n-4\n", out.toString());
+        assertEquals("line 2: Division by zero\nline 4: Mismatched parentheses at index 2 in expression: 2×(3\n", err.toString());
+    }
+
+    @Test
+    void testOrderIsKeptAcrossManyChunks() throws IOException {
+        int lines = 50_000;
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            input.append(i).append("+1\n");
+            expected.append(i + 1).append('\n');
+        }
+        StringWriter out = new StringWriter();
+        new BatchRunner(4).run(new BufferedReader(new StringReader(input.toString())), out, new StringWriter());
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    @Test
+    void testInputIsStreamed() throws IOException {
+        // an endless input, of which only a bounded number of lines may be read ahead of the output
+        long[] read = {0};
+        Reader endless = new Reader() {
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                for (int i = 0; i < length; i++) {
+                    buffer[offset + i] = i % 2 == 0 ? '7' : '\n';
+                }
+                read[0] += length / 2;
+                return length;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        StringWriter out = new StringWriter() {
+            @Override
+            public void write(String text) {
+                super.write(text);
+                if (getBuffer().length() > 100_000) {
+                    throw new IllegalStateException("enough output");
+                }
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> new BatchRunner(2).run(new BufferedReader(endless), out, new StringWriter()));
+        // 50 000 lines written, at most 2 workers × 4 chunks × 1024 lines and the reader buffer ahead of them
+        assertTrue(read[0] < 50_000 + 8 * 1024 + 16_384, "read " + read[0] + " lines");
+    }
+
+    @Test
+    void testWorkerCountMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new BatchRunner(0));
+    }
+}
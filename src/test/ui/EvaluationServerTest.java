@@ -0,0 +1,141 @@
+package test.ui;
+
+import main.ui.EvaluationServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EvaluationServerTest {
+    private EvaluationServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new EvaluationServer(0);
+        server.start();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+        client.close();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getPort() + path);
+    }
+
+    private HttpResponse<String> post(String path, String contentType, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri(path)).header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(uri(path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testSingleExpression() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/evaluate?expression=" + URLEncoder.encode("2×(3+4)", StandardCharsets.UTF_8));
+        assertEquals(200, response.statusCode());
+        assertEquals("14\n", response.body());
+
+        response = post("/evaluate", "text/plain", "√16+0.5\n");
+        assertEquals(200, response.statusCode());
+        assertEquals("4.5\n", response.body());
+
+        response = post("/evaluate", "text/plain", "1÷0");
+        assertEquals(422, response.statusCode());
+        assertEquals("ARITHMETIC ERROR: Division by zero\n", response.body());
+
+        response = post("/evaluate", "text/plain", "2+");
+        assertEquals(422, response.statusCode());
+        assertTrue(response.body().startsWith("SYNTAX ERROR"));
+
+        // NaN and the infinities have no decimal to show
+        response = get("/evaluate?expression=" + URLEncoder.encode("√(0-1)", StandardCharsets.UTF_8));
+        assertEquals(422, response.statusCode());
+        assertEquals("ARITHMETIC ERROR: Result is not a finite number\n", response.body());
+
+        assertEquals(400, get("/evaluate").statusCode());
+    }
+
+    @Test
+    void testUnencodedPlus() throws IOException, InterruptedException {
+        // a '+' typed straight into the query is an addition, not a space
+        HttpResponse<String> response = get("/evaluate?expression=1+2");
+        assertEquals(200, response.statusCode());
+        assertEquals("3\n", response.body());
+        assertEquals("3\n", get("/evaluate?expression=1%2B2").body());
+        assertEquals("6\n", get("/evaluate?expression=%E2%88%9A(16)+2").body());
+    }
+
+    @Test
+    void testLineDelimitedBatch() throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/batch", "text/plain", "1+1\r\nln(0)\n\n2(3)\n");
+        assertEquals(200, response.statusCode());
+        assertEquals("2\nARITHMETIC ERROR\n\n6\n", response.body());
+    }
+
+    @Test
+    void testJsonBatch() throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/batch", "application/json", "[\"1+1\", \"0.1+0.2\", \"1\\u00f70\", \"(\"]");
+        assertEquals(200, response.statusCode());
+        assertEquals("[2,0.3,{\"error\":\"ARITHMETIC ERROR: Division by zero\"},"
+                + "{\"error\":\"SYNTAX ERROR: Mismatched parentheses at index 0 in expression: (\"}]\n", response.body());
+
+        // one value per expression, wherever the empty ones are
+        assertEquals("[null,2]\n", post("/batch", "application/json", "[\"\", \"1+1\"]").body());
+        assertEquals("[2,null]\n", post("/batch", "application/json", "[\"1+1\", \"\"]").body());
+        assertEquals("[null,{\"error\":\"ARITHMETIC ERROR: Result is not a finite number\"},null]\n",
+                post("/batch", "application/json", "[\"\", \"10^400\", \"\"]").body());
+        assertEquals("[]\n", post("/batch", "application/json", " [ ] ").body());
+        assertEquals(400, post("/batch", "application/json", "[\"1\"").statusCode());
+        assertEquals(400, post("/batch", "application/json", "{}").statusCode());
+    }
+
+    @Test
+    void testMetrics() throws IOException, InterruptedException {
+        get("/evaluate?expression=1");
+        String metrics = get("/metrics").body();
+        assertTrue(metrics.startsWith("requests 1\n"), metrics);
+        assertTrue(metrics.contains("p99_us "), metrics);
+        assertEquals(2, server.getLatencies().getCount());
+    }
+
+    // Requests in flight at once each get their own connection and are all answered. ServerLoadBenchmark in the
+    // bench module does the same with thousands of connections
+    @Test
+    void testConcurrentRequests() {
+        int connections = 200;
+        List<CompletableFuture<HttpResponse<String>>> requests = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            HttpRequest request = HttpRequest.newBuilder(uri("/evaluate"))
+                    .POST(HttpRequest.BodyPublishers.ofString("(" + i + "+1)×2")).build();
+            requests.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        for (int i = 0; i < connections; i++) {
+            HttpResponse<String> response = requests.get(i).join();
+            assertEquals(200, response.statusCode());
+            assertEquals((i + 1) * 2 + "\n", response.body());
+        }
+        assertEquals(connections, server.getLatencies().getCount());
+    }
+}